@@ -0,0 +1,122 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of BeliefState, on the shipped maps at several levels of ghost uncertainty
+ * (beliefSize is the number of possible ghost positions; 4 means that the 4 ghosts are known).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeliefStateBenchmark {
+    @Param({"1", "2", "3"})
+    int map;
+
+    @Param({"4", "16", "64"})
+    int beliefSize;
+
+    BeliefState state;
+    BeliefState other;         // an equal state, built separately, for compareTo
+    String move;               // a move that changes the position of pacman
+    ArrayList < BeliefState > outcomes;
+    int ghost;
+    Position ghostPosition;
+    Position[] ghostPositions;  // one position per ghost, as observed in the game
+    ArrayList < BeliefState > toFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.state = BenchmarkFixtures.uncertain(BenchmarkFixtures.load(this.map), this.beliefSize);
+        this.other = new BeliefState(this.state, false);
+        Plans plans = this.state.extendsBeliefState();
+        int widest = 0;
+        for (int i = 0; i < plans.size(); i++) {// the move with the most outcomes
+            if (plans.getResult(i).size() > plans.getResult(widest).size()) {
+                widest = i;
+            }
+        }
+        this.move = plans.getAction(widest).get(0);
+        this.outcomes = plans.getResult(widest).getBeliefStates();
+        // filtering keeps the outcomes where a ghost is at the position it has in one of them
+        BeliefState seen = this.outcomes.get(this.outcomes.size() - 1);
+        this.ghost = this.state.getNbrOfGhost() - 1;
+        this.ghostPosition = seen.getPGhost(this.ghost);
+        this.ghostPositions = new Position[seen.getNbrOfGhost()];
+        for (int g = 0; g < this.ghostPositions.length; g++) {
+            this.ghostPositions[g] = seen.getPGhost(g);
+        }
+        System.out.println("\nmap " + this.map + ": belief of " + this.state.getNbrOfGhostPositions() + " ghost positions, "
+            + this.outcomes.size() + " outcomes for " + this.move);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyOutcomes() {
+        this.toFilter = new ArrayList < > (this.outcomes);
+    }
+
+    @Benchmark
+    public Result extendsBeliefStateMove() {
+        return this.state.extendsBeliefState(this.move);
+    }
+
+    @Benchmark
+    public Plans extendsBeliefStateAll() {
+        return this.state.extendsBeliefState();
+    }
+
+    @Benchmark
+    public int distanceMinToGum() {
+        return this.state.distanceMinToGum();
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return this.state.compareTo(this.other);
+    }
+
+    @Benchmark
+    public void isVisible(Blackhole bh) {
+        Position pacman = this.state.getPacmanPos();
+        for (int g = 0; g < this.state.getNbrOfGhost(); g++) {
+            for (Position pos: this.state.getGhostPositions(g)) {
+                bh.consume(BeliefState.isVisible(pos.x, pos.y, pacman.x, pacman.y));
+            }
+        }
+    }
+
+    @Benchmark
+    public BeliefState copyConstructor() {
+        return new BeliefState(this.state, false);
+    }
+
+    @Benchmark
+    public ArrayList < BeliefState > filter() {
+        BeliefState.filter(this.toFilter, this.ghost, this.ghostPosition);
+        return this.toFilter;
+    }
+
+    @Benchmark
+    public ArrayList < BeliefState > filterAllGhosts() {
+        BeliefState.filter(this.toFilter, this.ghostPositions);
+        return this.toFilter;
+    }
+}
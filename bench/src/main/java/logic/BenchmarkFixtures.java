@@ -0,0 +1,94 @@
+package logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import data.CompiledMap;
+import view.Canvas;
+
+/**
+ * Realistic belief states for the benchmarks, built from the shipped maps (doc/mapN.map).
+ * A fixture starts from the initial state of a map and plays seeded random moves, keeping after each move the
+ * resulting state where the ghosts are the most uncertain, until the belief reaches the requested size.
+ * The maps are looked for in the directory of the system property pacman.maps, then in doc and ../doc.
+ */
+final class BenchmarkFixtures {
+    static final long SEED = 42;
+    static final int MAX_MOVES = 400;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Find the directory of the maps
+     * @return the directory containing map1.map
+     */
+    static String mapDirectory() {
+        String[] candidates = {System.getProperty("pacman.maps", ""), "doc", "../doc"};
+        for (String dir: candidates) {
+            if (!dir.isEmpty() && new File(dir, "map1.map").exists()) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("map1.map not found, set -Dpacman.maps=<directory of the maps>");
+    }
+
+    /**
+     * Load a shipped map and make it the current level of the belief states
+     * @param map the number of the map
+     * @return the initial belief state of the map
+     */
+    static BeliefState load(int map) {
+        Canvas.setHeadless(true);
+        try {
+            CompiledMap level = CompiledMap.compile(mapDirectory() + "/map" + map + ".map", map);
+            return ScalingBenchmark.install(level);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Play random moves from a state until the ghosts are uncertain enough
+     * @param start the initial state
+     * @param beliefSize the requested number of possible ghost positions (see BeliefState.getNbrOfGhostPositions)
+     * @return a state with at least beliefSize possible ghost positions, or the most uncertain one met in MAX_MOVES moves
+     */
+    static BeliefState uncertain(BeliefState start, int beliefSize) {
+        Random rand = new Random(SEED);
+        BeliefState state = start;
+        BeliefState mostUncertain = start;
+        for (int move = 0; move < MAX_MOVES && state.getNbrOfGhostPositions() < beliefSize; move++) {
+            Plans plans = state.extendsBeliefState();
+            if (plans.size() == 0) {
+                break;
+            }
+            Result result = plans.getResult(rand.nextInt(plans.size()));
+            BeliefState next = null;
+            for (BeliefState bs: result.getBeliefStates()) {
+                if (bs.getLife() == state.getLife() && bs.getNbrOfGommes() > 0
+                    && (next == null || bs.getNbrOfGhostPositions() > next.getNbrOfGhostPositions())) {
+                    next = bs;
+                }
+            }
+            if (next == null) {// every outcome loses a life or ends the level, try another move
+                continue;
+            }
+            state = next;
+            if (state.getNbrOfGhostPositions() > mostUncertain.getNbrOfGhostPositions()) {
+                mostUncertain = state;
+            }
+        }
+        return state.getNbrOfGhostPositions() >= beliefSize ? state : mostUncertain;
+    }
+
+    /**
+     * Forget what the AI learnt, so that each search starts from scratch
+     */
+    static void resetAI() {
+        ScalingBenchmark.resetAI();
+        AI.rand.setSeed(SEED);
+    }
+}
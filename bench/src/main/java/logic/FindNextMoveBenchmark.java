@@ -0,0 +1,51 @@
+package logic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end decision of the AI on the shipped maps. The caches of the AI are cleared before each call,
+ * so that every call runs the whole AND-OR search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindNextMoveBenchmark {
+    @Param({"1", "2", "3"})
+    int map;
+
+    @Param({"4", "16", "64"})
+    int beliefSize;
+
+    BeliefState state;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.state = BenchmarkFixtures.uncertain(BenchmarkFixtures.load(this.map), this.beliefSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetAI() {
+        BenchmarkFixtures.resetAI();
+    }
+
+    @Benchmark
+    public String findNextMove() {
+        return AI.findNextMove(this.state);
+    }
+}
@@ -0,0 +1,675 @@
+package data;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Forme compilée d'un fichier .map : tout ce qui ne change pas pendant un niveau est calculé une seule fois
+ * (cases, positions de départ, visibilité, transitions et distances) puis réutilisé a chaque fois que le niveau revient.
+ * Les objets de cette classe ne sont jamais modifiés après leur création (voir LevelCatalog).
+ *
+ * Visibilité : deux cases se voient si elles sont sur la meme ligne (ou colonne) sans mur entre elles,
+ * c'est a dire si elles appartiennent au meme segment horizontal (ou vertical) de cases libres.
+ * Chaque case libre porte donc l'identifiant de son segment de ligne et de son segment de colonne.
+ *
+ * Une map compilée peut etre enregistrée dans un fichier binaire .cmap (voir write) et rechargée par projection
+ * en mémoire (voir load) sans rien recalculer :
+ *   en-tete  : MAGIC (int), VERSION (byte), numéro (int), nbCases (int), couleur des murs (short + octets UTF-8)
+ *   compteurs: nbrGomme, nbrSuperGomme, ligne et colonne de pacman (int)
+ *   fantomes : nombre (int) puis ligne, colonne (int) de chacun
+ *   cases    : nbCases * nbCases caracteres (byte) puis nbCases * nbCases types de case (byte)
+ *   libres   : nombre (int) puis ligne, colonne (int) de chacune, puis le numéro de chaque case (int)
+ *   visibilité : segment de ligne puis segment de colonne de chaque case (int)
+ *   transitions : 4 * nombre de cases libres (int)
+ *   distances : drapeau (byte), puis si il vaut 1 la table de toutes les distances (short)
+ * Les entiers sont en little-endian.
+ *
+ * @inv getNbrGomme() > 0
+ */
+public class CompiledMap {
+
+	/** Directions des tables de transition */
+	public static final int UP = 0;
+	public static final int DOWN = 1;
+	public static final int LEFT = 2;
+	public static final int RIGHT = 3;
+	/** Déplacement en ligne et en colonne de chaque direction */
+	private static final int[] DLIGNE = {-1, 1, 0, 0};
+	private static final int[] DCOLONNE = {0, 0, -1, 1};
+	/** Nombre maximum de cases libres pour garder la table de toutes les distances (taille : carré de ce nombre) */
+	public static final int MAX_CASES_DISTANCES = 2048;
+	/** Signature des fichiers .cmap ("PMCM") */
+	public static final int MAGIC = 0x504D434D;
+	/** Version du format .cmap */
+	public static final byte VERSION = 1;
+
+	private final int mapNumber;
+	private final int nbCases;
+	private final String couleurMur;
+	/** Les caracteres du fichier, pour initialiser la croyance de l'IA */
+	private final char[][] cases;
+	/** Les cases en début de niveau (Map.TILE_...) */
+	private final byte[][] tiles;
+	private final int nbrGomme;
+	private final int nbrSuperGomme;
+	private final int pacmanLigne;
+	private final int pacmanColonne;
+	/** Position (ligne, colonne) de départ de chaque fantome */
+	private final List<int[]> ghosts;
+	/** Position (ligne, colonne) de chaque case libre */
+	private final ArrayList<int[]> gamePositions;
+	/** Identifiant du segment horizontal / vertical de chaque case libre, -1 pour un mur */
+	private final int[][] segmentLigne;
+	private final int[][] segmentColonne;
+	/** Numéro de chaque case libre (indice dans gamePositions), -1 pour un mur */
+	private final int[][] numeroCase;
+	/** Case libre voisine de chaque case libre dans chaque direction : transitions[4 * numero + direction], -1 pour un mur */
+	private final int[] transitions;
+	/** Distances entre toutes les paires de cases libres, calculées a la premiere demande ou projetées depuis un .cmap */
+	private volatile ShortBuffer distances;
+	/** Pour chaque fantome, le fantome dont la position de départ est symétrique de la sienne par rapport a l'axe vertical,
+	 *  null si la map n'est pas symétrique (voir getMirrorGhosts) */
+	private final int[] fantomesMiroirs;
+	/** Graphe des carrefours et des couloirs, calculé a la premiere demande */
+	private volatile JunctionGraph junctionGraph;
+
+	/**
+	 * Lit et compile un fichier .map
+	 *
+	 * @param mapFile le fichier a lire
+	 * @param mapNumber le numéro du niveau
+	 * @return la map compilée
+	 */
+	public static CompiledMap compile(String mapFile, int mapNumber) throws IOException {
+		List<String> lignes = Files.readAllLines(Paths.get(mapFile), StandardCharsets.UTF_8);
+		if (lignes.isEmpty()) {
+			throw new IOException(mapFile + " est vide");
+		}
+		String[] param = lignes.get(0).split(";");
+		int nbCases = Integer.parseInt(param[0]);
+		char[][] cases = new char[nbCases][nbCases];
+		for (char[] ligne : cases) {
+			Arrays.fill(ligne, '#');
+		}
+		for (int i = 0; i < nbCases && i + 1 < lignes.size(); i++) {
+			String ligne = lignes.get(i + 1);
+			for (int j = 0; j < nbCases && j < ligne.length(); j++) {
+				cases[i][j] = ligne.charAt(j);
+			}
+		}
+		return new CompiledMap(mapNumber, param[1], cases);
+	}
+
+	/**
+	 * Compile une map a partir de ses cases
+	 *
+	 * @param mapNumber le numéro du niveau
+	 * @param couleurMur la couleur des murs
+	 * @param cases les caracteres de la map (voir Map), une ligne par ligne de la map
+	 */
+	public CompiledMap(int mapNumber, String couleurMur, char[][] cases) {
+		this.mapNumber = mapNumber;
+		this.nbCases = cases.length;
+		this.couleurMur = couleurMur;
+		this.cases = cases;
+		this.tiles = new byte[this.nbCases][this.nbCases];
+		this.numeroCase = new int[this.nbCases][this.nbCases];
+		this.segmentLigne = new int[this.nbCases][this.nbCases];
+		this.segmentColonne = new int[this.nbCases][this.nbCases];
+		ArrayList<int[]> ghosts = new ArrayList<int[]>();
+		this.gamePositions = new ArrayList<int[]>();
+		int nbrGomme = 0, nbrSuperGomme = 0, pacmanLigne = -1, pacmanColonne = -1;
+		for (int i = 0; i < this.nbCases; i++) {
+			for (int j = 0; j < this.nbCases; j++) {
+				this.numeroCase[i][j] = -1;
+				switch (cases[i][j]) {
+				case '#' :
+					this.tiles[i][j] = Map.TILE_MUR;
+					break;
+				case '.' :
+					this.tiles[i][j] = Map.TILE_GOMME;
+					nbrGomme++;
+					break;
+				case '*' :
+					this.tiles[i][j] = Map.TILE_SUPER_GOMME;
+					nbrGomme++;
+					nbrSuperGomme++;
+					break;
+				case 'P' :
+					pacmanLigne = i;
+					pacmanColonne = j;
+					break;
+				case 'F' :
+					int[] posGhost = {i, j};
+					ghosts.add(posGhost);
+					break;
+				case 'O' :
+					break;
+				default :
+					continue;
+				}
+				if (this.tiles[i][j] != Map.TILE_MUR) {
+					this.numeroCase[i][j] = this.gamePositions.size();
+					int[] pos = {i, j};
+					this.gamePositions.add(pos);
+				}
+			}
+		}
+		this.nbrGomme = nbrGomme;
+		this.nbrSuperGomme = nbrSuperGomme;
+		this.pacmanLigne = pacmanLigne;
+		this.pacmanColonne = pacmanColonne;
+		this.ghosts = Collections.unmodifiableList(ghosts);
+
+		int segment = 0;
+		for (int i = 0; i < this.nbCases; i++) {
+			for (int j = 0; j < this.nbCases; j++) {
+				if (this.numeroCase[i][j] == -1) {
+					this.segmentLigne[i][j] = -1;
+				}
+				else {
+					if (j == 0 || this.numeroCase[i][j - 1] == -1) {
+						segment++;
+					}
+					this.segmentLigne[i][j] = segment;
+				}
+			}
+		}
+		for (int j = 0; j < this.nbCases; j++) {
+			for (int i = 0; i < this.nbCases; i++) {
+				if (this.numeroCase[i][j] == -1) {
+					this.segmentColonne[i][j] = -1;
+				}
+				else {
+					if (i == 0 || this.numeroCase[i - 1][j] == -1) {
+						segment++;
+					}
+					this.segmentColonne[i][j] = segment;
+				}
+			}
+		}
+
+		this.transitions = new int[4 * this.gamePositions.size()];
+		for (int n = 0; n < this.gamePositions.size(); n++) {
+			int[] pos = this.gamePositions.get(n);
+			for (int dir = 0; dir < 4; dir++) {
+				int i = pos[0] + DLIGNE[dir], j = pos[1] + DCOLONNE[dir];
+				this.transitions[4 * n + dir] = (i >= 0 && i < this.nbCases && j >= 0 && j < this.nbCases) ? this.numeroCase[i][j] : -1;
+			}
+		}
+
+		assert nbrGomme > 0 : "Post condition non respectée : nombre de gomme nul";
+		assert pacmanLigne > 0 && pacmanColonne > 0 : "Post condition non respectée : pacman non initialisé";
+		this.fantomesMiroirs = CompiledMap.fantomesMiroirs(this.cases, this.ghosts);
+		this.invariant();
+	}
+
+	public int getMapNumber() {
+		return this.mapNumber;
+	}
+
+	public int getNbCases() {
+		return this.nbCases;
+	}
+
+	public String getCouleurMur() {
+		return this.couleurMur;
+	}
+
+	/**
+	 * Getter pour le caractere d'une case dans le fichier .map
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @return le caractere de la case
+	 */
+	public char getCase(int ligne, int colonne) {
+		return this.cases[ligne][colonne];
+	}
+
+	/**
+	 * Getter pour le type d'une case en début de niveau
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @return Map.TILE_VIDE, TILE_MUR, TILE_GOMME ou TILE_SUPER_GOMME
+	 */
+	public byte getTile(int ligne, int colonne) {
+		return this.tiles[ligne][colonne];
+	}
+
+	/**
+	 * Copie les cases de début de niveau, pour une partie qui va les modifier
+	 *
+	 * @return une copie du tableau des cases
+	 */
+	public byte[][] copyTiles() {
+		byte[][] copie = new byte[this.nbCases][];
+		for (int i = 0; i < this.nbCases; i++) {
+			copie[i] = this.tiles[i].clone();
+		}
+		return copie;
+	}
+
+	public int getNbrGomme() {
+		return this.nbrGomme;
+	}
+
+	public int getNbrSuperGomme() {
+		return this.nbrSuperGomme;
+	}
+
+	public int getPacmanLigne() {
+		return this.pacmanLigne;
+	}
+
+	public int getPacmanColonne() {
+		return this.pacmanColonne;
+	}
+
+	/**
+	 * Cherche si une map est symétrique par rapport a l'axe vertical (murs, gommes, pacman et fantomes compris)
+	 *
+	 * @param cases les caracteres de la map
+	 * @param ghosts les positions de départ des fantomes
+	 * @return pour chaque fantome l'indice de son symétrique, null si la map n'est pas symétrique
+	 */
+	private static int[] fantomesMiroirs(char[][] cases, List<int[]> ghosts) {
+		int n = cases.length;
+		for (char[] ligne : cases) {
+			for (int j = 0; j < n / 2; j++) {
+				if (ligne[j] != ligne[n - 1 - j]) {
+					return null;
+				}
+			}
+		}
+		int[] miroirs = new int[ghosts.size()];
+		for (int g = 0; g < miroirs.length; g++) {
+			miroirs[g] = -1;
+			for (int h = 0; h < miroirs.length && miroirs[g] == -1; h++) {
+				if (ghosts.get(h)[0] == ghosts.get(g)[0] && ghosts.get(h)[1] == n - 1 - ghosts.get(g)[1]) {
+					miroirs[g] = h;
+				}
+			}
+			if (miroirs[g] == -1) {
+				return null;
+			}
+		}
+		return miroirs;
+	}
+
+	/**
+	 * Indique si la map est symétrique par rapport a l'axe vertical : une partie et sa symétrique (gauche et droite
+	 * échangées, et les fantomes échangés avec leurs symétriques) se déroulent alors de la meme façon
+	 *
+	 * @return vrai si la map est symétrique
+	 */
+	public boolean isMirrorSymmetric() {
+		return this.fantomesMiroirs != null;
+	}
+
+	/**
+	 * Donne le fantome symétrique de chaque fantome
+	 *
+	 * @return pour chaque fantome, l'indice du fantome dont la position de départ est la symétrique de la sienne
+	 * @pre isMirrorSymmetric()
+	 */
+	public int[] getMirrorGhosts() {
+		assert this.isMirrorSymmetric() : "Precondition non respectée : la map n'est pas symétrique";
+		return this.fantomesMiroirs.clone();
+	}
+
+	/**
+	 * Getter pour les positions de départ des fantomes
+	 *
+	 * @return la liste non modifiable des positions (ligne, colonne)
+	 */
+	public List<int[]> getGhosts() {
+		return this.ghosts;
+	}
+
+	/**
+	 * Getter pour les positions des cases libres, dans l'ordre de leur numéro
+	 * (la liste ne doit pas etre modifiée)
+	 *
+	 * @return la liste des positions (ligne, colonne)
+	 */
+	public ArrayList<int[]> getGamePositions() {
+		return this.gamePositions;
+	}
+
+	/**
+	 * Getter pour le numéro d'une case libre
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @return le numéro de la case, -1 pour un mur
+	 */
+	public int getNumeroCase(int ligne, int colonne) {
+		return this.numeroCase[ligne][colonne];
+	}
+
+	/**
+	 * Donne la case libre voisine d'une case libre
+	 *
+	 * @param numero le numéro de la case
+	 * @param direction UP, DOWN, LEFT ou RIGHT
+	 * @return le numéro de la case voisine, -1 si c'est un mur ou le bord de la map
+	 */
+	public int next(int numero, int direction) {
+		return this.transitions[4 * numero + direction];
+	}
+
+	/**
+	 * Indique si deux cases se voient (meme ligne ou meme colonne sans mur entre elles)
+	 *
+	 * @return vrai si les deux cases sont libres et se voient
+	 */
+	public boolean isVisible(int row1, int column1, int row2, int column2) {
+		if (row1 == row2) {
+			return this.segmentLigne[row1][column1] != -1 && this.segmentLigne[row1][column1] == this.segmentLigne[row2][column2];
+		}
+		if (column1 == column2) {
+			return this.segmentColonne[row1][column1] != -1 && this.segmentColonne[row1][column1] == this.segmentColonne[row2][column2];
+		}
+		return false;
+	}
+
+	/**
+	 * Donne la longueur du plus court chemin entre deux cases libres
+	 * La table de toutes les distances est calculée a la premiere demande si la map n'a pas plus de MAX_CASES_DISTANCES cases libres,
+	 * sinon la distance est recalculée a chaque demande.
+	 *
+	 * @return la distance en nombre de cases, -1 si l'une des cases est un mur ou si elles ne sont pas reliées
+	 */
+	public int distance(int row1, int column1, int row2, int column2) {
+		int depart = this.numeroCase[row1][column1], arrivee = this.numeroCase[row2][column2];
+		if (depart == -1 || arrivee == -1) {
+			return -1;
+		}
+		int n = this.gamePositions.size();
+		if (n > MAX_CASES_DISTANCES) {
+			short[] ligne = new short[n];
+			this.bfs(depart, ligne, 0);
+			return ligne[arrivee];
+		}
+		return this.getDistances().get(depart * n + arrivee);
+	}
+
+	/**
+	 * Getter pour le graphe des carrefours et des couloirs, calculé a la premiere demande
+	 *
+	 * @return le graphe
+	 */
+	public JunctionGraph getJunctionGraph() {
+		JunctionGraph graphe = this.junctionGraph;
+		if (graphe == null) {
+			synchronized (this) {
+				graphe = this.junctionGraph;
+				if (graphe == null) {
+					graphe = new JunctionGraph(this);
+					this.junctionGraph = graphe;
+				}
+			}
+		}
+		return graphe;
+	}
+
+	/**
+	 * Getter pour la table de toutes les distances, calculée si besoin
+	 *
+	 * @return la table, distance de la case a vers la case b a l'indice a * nombre de cases libres + b
+	 * @pre getGamePositions().size() <= MAX_CASES_DISTANCES
+	 */
+	private ShortBuffer getDistances() {
+		ShortBuffer table = this.distances;
+		if (table == null) {
+			synchronized (this) {
+				table = this.distances;
+				if (table == null) {
+					int n = this.gamePositions.size();
+					short[] tableau = new short[n * n];
+					for (int s = 0; s < n; s++) {
+						this.bfs(s, tableau, s * n);
+					}
+					table = ShortBuffer.wrap(tableau);
+					this.distances = table;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Parcours en largeur depuis une case libre, les distances sont ecrites dans table a partir de offset
+	 */
+	private void bfs(int depart, short[] table, int offset) {
+		int n = this.gamePositions.size();
+		Arrays.fill(table, offset, offset + n, (short)-1);
+		int[] file = new int[n];
+		int debut = 0, fin = 0;
+		file[fin++] = depart;
+		table[offset + depart] = 0;
+		while (debut < fin) {
+			int c = file[debut++];
+			for (int dir = 0; dir < 4; dir++) {
+				int v = this.transitions[4 * c + dir];
+				if (v != -1 && table[offset + v] == -1) {
+					table[offset + v] = (short)(table[offset + c] + 1);
+					file[fin++] = v;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Enregistre la map compilée dans un fichier .cmap
+	 *
+	 * @param fichier le fichier a ecrire (écrasé s'il existe)
+	 * @param avecDistances vrai pour enregistrer aussi la table de toutes les distances (ignoré si la map a plus de MAX_CASES_DISTANCES cases libres)
+	 */
+	public void write(String fichier, boolean avecDistances) throws IOException {
+		int n = this.gamePositions.size();
+		avecDistances = avecDistances && n <= MAX_CASES_DISTANCES;
+		byte[] couleur = this.couleurMur.getBytes(StandardCharsets.UTF_8);
+		int nn = this.nbCases * this.nbCases;
+		long taille = 4 + 1 + 4 + 4 + 2 + couleur.length + 4 * 4
+				+ 4 + 8L * this.ghosts.size()
+				+ 2L * nn
+				+ 4 + 8L * n + 4L * nn
+				+ 8L * nn
+				+ 16L * n
+				+ 1 + (avecDistances ? 2L * n * n : 0);
+		if (taille > Integer.MAX_VALUE) {
+			throw new IOException("Map trop grande pour le format .cmap");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int)taille).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.putInt(this.mapNumber);
+		buffer.putInt(this.nbCases);
+		buffer.putShort((short)couleur.length);
+		buffer.put(couleur);
+		buffer.putInt(this.nbrGomme);
+		buffer.putInt(this.nbrSuperGomme);
+		buffer.putInt(this.pacmanLigne);
+		buffer.putInt(this.pacmanColonne);
+		buffer.putInt(this.ghosts.size());
+		for (int[] pos : this.ghosts) {
+			buffer.putInt(pos[0]);
+			buffer.putInt(pos[1]);
+		}
+		for (char[] ligne : this.cases) {
+			for (char c : ligne) {
+				buffer.put((byte)c);
+			}
+		}
+		for (byte[] ligne : this.tiles) {
+			buffer.put(ligne);
+		}
+		buffer.putInt(n);
+		for (int[] pos : this.gamePositions) {
+			buffer.putInt(pos[0]);
+			buffer.putInt(pos[1]);
+		}
+		for (int[][] tableau : new int[][][] {this.numeroCase, this.segmentLigne, this.segmentColonne}) {
+			for (int[] ligne : tableau) {
+				buffer.asIntBuffer().put(ligne);
+				buffer.position(buffer.position() + 4 * ligne.length);
+			}
+		}
+		buffer.asIntBuffer().put(this.transitions);
+		buffer.position(buffer.position() + 4 * this.transitions.length);
+		buffer.put((byte)(avecDistances ? 1 : 0));
+		if (avecDistances) {
+			ShortBuffer table = this.getDistances().duplicate();
+			table.rewind();
+			buffer.asShortBuffer().put(table);
+			buffer.position(buffer.position() + 2 * n * n);
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(Paths.get(fichier), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Charge une map compilée depuis un fichier .cmap projeté en mémoire (en lecture seule)
+	 * la table des distances, si elle est présente, est lue directement dans la projection
+	 *
+	 * @param fichier le fichier a lire
+	 * @return la map compilée
+	 */
+	public static CompiledMap load(String fichier) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Paths.get(fichier), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+			throw new IOException(fichier + " n'est pas une map compilée");
+		}
+		byte version = buffer.get();
+		if (version != VERSION) {
+			throw new IOException("Version de map compilée non supportée : " + version);
+		}
+		return new CompiledMap(buffer);
+	}
+
+	/**
+	 * Relit une map compilée (voir load), le buffer est placé juste apres la version
+	 */
+	private CompiledMap(ByteBuffer buffer) {
+		this.mapNumber = buffer.getInt();
+		this.nbCases = buffer.getInt();
+		byte[] couleur = new byte[buffer.getShort()];
+		buffer.get(couleur);
+		this.couleurMur = new String(couleur, StandardCharsets.UTF_8).intern();
+		this.nbrGomme = buffer.getInt();
+		this.nbrSuperGomme = buffer.getInt();
+		this.pacmanLigne = buffer.getInt();
+		this.pacmanColonne = buffer.getInt();
+		ArrayList<int[]> ghosts = new ArrayList<int[]>();
+		for (int g = buffer.getInt(); g > 0; g--) {
+			int[] pos = {buffer.getInt(), buffer.getInt()};
+			ghosts.add(pos);
+		}
+		this.ghosts = Collections.unmodifiableList(ghosts);
+		this.cases = new char[this.nbCases][this.nbCases];
+		byte[] ligneCases = new byte[this.nbCases];
+		for (char[] ligne : this.cases) {
+			buffer.get(ligneCases);
+			for (int j = 0; j < this.nbCases; j++) {
+				ligne[j] = (char)ligneCases[j];
+			}
+		}
+		this.tiles = new byte[this.nbCases][this.nbCases];
+		for (byte[] ligne : this.tiles) {
+			buffer.get(ligne);
+		}
+		int n = buffer.getInt();
+		int[] positions = new int[2 * n];
+		buffer.asIntBuffer().get(positions);
+		buffer.position(buffer.position() + 8 * n);
+		this.gamePositions = new ArrayList<int[]>(n);
+		for (int c = 0; c < n; c++) {
+			int[] pos = {positions[2 * c], positions[2 * c + 1]};
+			this.gamePositions.add(pos);
+		}
+		this.numeroCase = CompiledMap.readGrid(buffer, this.nbCases);
+		this.segmentLigne = CompiledMap.readGrid(buffer, this.nbCases);
+		this.segmentColonne = CompiledMap.readGrid(buffer, this.nbCases);
+		this.transitions = new int[4 * n];
+		buffer.asIntBuffer().get(this.transitions);
+		buffer.position(buffer.position() + 4 * this.transitions.length);
+		if (buffer.get() == 1) {
+			ByteBuffer table = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+			table.limit(2 * n * n);
+			this.distances = table.asShortBuffer();
+		}
+		this.fantomesMiroirs = CompiledMap.fantomesMiroirs(this.cases, this.ghosts);
+		this.invariant();
+	}
+
+	/**
+	 * Lit une grille de nbCases * nbCases entiers
+	 */
+	private static int[][] readGrid(ByteBuffer buffer, int nbCases) {
+		int[][] grille = new int[nbCases][nbCases];
+		java.nio.IntBuffer entiers = buffer.asIntBuffer();
+		for (int[] ligne : grille) {
+			entiers.get(ligne);
+		}
+		buffer.position(buffer.position() + 4 * nbCases * nbCases);
+		return grille;
+	}
+
+	/**
+	 * Compile des fichiers .map en fichiers .cmap (a coté de chaque .map)
+	 * options :
+	 *   --distances   enregistre aussi la table de toutes les distances
+	 */
+	public static void main(String[] args) {
+		boolean avecDistances = false;
+		for (String arg : args) {
+			if (arg.equals("--distances")) {
+				avecDistances = true;
+			}
+		}
+		for (String arg : args) {
+			if (arg.equals("--distances")) {
+				continue;
+			}
+			try {
+				long debut = System.nanoTime();
+				java.util.regex.Matcher numero = java.util.regex.Pattern.compile("map(\\d+)\\.map$").matcher(arg);
+				CompiledMap map = CompiledMap.compile(arg, numero.find() ? Integer.parseInt(numero.group(1)) : 0);
+				String fichier = arg.replaceAll("\\.map$", "") + ".cmap";
+				map.write(fichier, avecDistances);
+				System.out.println(fichier + " : " + map.getNbCases() + "x" + map.getNbCases() + ", " + map.getGamePositions().size() + " cases libres, en " + (System.nanoTime() - debut) / 1000000 + "ms");
+			}
+			catch (IOException e) {
+				System.out.println("Erreur lors de la compilation de " + arg + " : " + e.getMessage());
+			}
+		}
+	}
+
+	protected void invariant() {
+		assert this.nbrGomme > 0 : "Invariant violé : map sans gomme";
+	}
+
+}
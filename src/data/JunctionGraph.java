@@ -0,0 +1,186 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Graphe des carrefours d'une map compilée : les noeuds sont les cases libres qui n'ont pas exactement deux voisines
+ * libres (carrefours et culs-de-sac), les arêtes sont les couloirs qui les relient. Une case de couloir n'offre aucun
+ * choix : on la traverse par la seule sortie qui ne fait pas demi-tour.
+ * Calculé une seule fois par map (voir CompiledMap.getJunctionGraph) et jamais modifié ensuite.
+ *
+ * @inv pour toute case libre c, isNode(c) ou c a exactement deux voisines libres
+ */
+public class JunctionGraph {
+
+	/**
+	 * Arête du graphe : le couloir pris depuis un noeud dans une direction, jusqu'au noeud suivant
+	 * (ou jusqu'a revenir au départ dans une boucle sans carrefour)
+	 */
+	public static final class Edge {
+		/** Case de départ (un noeud), direction de sortie et case d'arrivée (un noeud) */
+		public final int node, direction, target;
+		/** Nombre de pas du couloir */
+		public final int length;
+		/** Nombre de gommes et de super gommes du couloir en début de niveau, arrivée comprise */
+		public final int gums;
+		/** Case atteinte et direction prise a chaque pas */
+		private final int[] cases, directions;
+
+		private Edge(int node, int direction, int[] cases, int[] directions, int gums) {
+			this.node = node;
+			this.direction = direction;
+			this.cases = cases;
+			this.directions = directions;
+			this.length = cases.length;
+			this.target = cases[cases.length - 1];
+			this.gums = gums;
+		}
+
+		/**
+		 * @param pas un pas du couloir, de 0 a length - 1
+		 * @return la case atteinte a ce pas
+		 */
+		public int getCase(int pas) {
+			return this.cases[pas];
+		}
+
+		/**
+		 * @param pas un pas du couloir, de 0 a length - 1
+		 * @return la direction prise a ce pas (UP, DOWN, LEFT ou RIGHT de CompiledMap)
+		 */
+		public int getDirection(int pas) {
+			return this.directions[pas];
+		}
+	}
+
+	private final CompiledMap map;
+	/** Vrai pour chaque case libre qui est un noeud */
+	private final boolean[] noeuds;
+	/** Les arêtes, partant de chaque noeud dans chacune de ses directions ouvertes */
+	private final ArrayList<Edge> aretes;
+	/** Pour chaque case de couloir c où l'on arrive dans la direction d, a l'indice 4 * c + d : l'arête suivie, -1 sinon */
+	private final int[] arete;
+	/** Et le pas de cette arête qui arrive dans la case */
+	private final int[] pas;
+
+	/**
+	 * Construit le graphe d'une map
+	 *
+	 * @param map la map compilée
+	 */
+	public JunctionGraph(CompiledMap map) {
+		this.map = map;
+		int n = map.getGamePositions().size();
+		this.noeuds = new boolean[n];
+		for (int c = 0; c < n; c++) {
+			this.noeuds[c] = this.nbSorties(c) != 2;
+		}
+		this.aretes = new ArrayList<Edge>();
+		this.arete = new int[4 * n];
+		this.pas = new int[4 * n];
+		Arrays.fill(this.arete, -1);
+		int[] cases = new int[n], directions = new int[n];
+		for (int c = 0; c < n; c++) {
+			for (int dir = 0; this.noeuds[c] && dir < 4; dir++) {
+				int courante = map.next(c, dir);
+				if (courante == -1) {
+					continue;
+				}
+				int longueur = 0, nbGommes = 0, direction = dir;
+				while (true) {
+					cases[longueur] = courante;
+					directions[longueur++] = direction;
+					if (this.isGomme(courante)) {
+						nbGommes++;
+					}
+					if (this.noeuds[courante] || longueur == n) {
+						break;
+					}
+					this.arete[4 * courante + direction] = this.aretes.size();
+					this.pas[4 * courante + direction] = longueur - 1;
+					direction = this.corridorExit(courante, direction);
+					courante = map.next(courante, direction);
+				}
+				this.aretes.add(new Edge(c, dir, Arrays.copyOf(cases, longueur), Arrays.copyOf(directions, longueur), nbGommes));
+			}
+		}
+	}
+
+	private boolean isGomme(int c) {
+		int[] pos = this.map.getGamePositions().get(c);
+		byte tile = this.map.getTile(pos[0], pos[1]);
+		return tile == Map.TILE_GOMME || tile == Map.TILE_SUPER_GOMME;
+	}
+
+	private int nbSorties(int c) {
+		int nb = 0;
+		for (int dir = 0; dir < 4; dir++) {
+			if (this.map.next(c, dir) != -1) {
+				nb++;
+			}
+		}
+		return nb;
+	}
+
+	/**
+	 * Indique si une case est un noeud du graphe, c'est a dire si on peut y choisir sa direction
+	 *
+	 * @param numero le numéro de la case libre
+	 * @return vrai pour un carrefour ou un cul-de-sac, faux pour une case de couloir
+	 */
+	public boolean isNode(int numero) {
+		return this.noeuds[numero];
+	}
+
+	/**
+	 * @return les arêtes du graphe, deux par couloir (une dans chaque sens)
+	 */
+	public ArrayList<Edge> getEdges() {
+		return this.aretes;
+	}
+
+	/**
+	 * Donne l'arête que l'on suit quand on arrive dans une case de couloir
+	 *
+	 * @param numero le numéro de la case de couloir
+	 * @param direction la direction dans laquelle on est entré dans la case
+	 * @return l'arête, null si la case n'est sur aucune arête (couloir en boucle sans carrefour)
+	 * @pre !isNode(numero)
+	 */
+	public Edge edgeThrough(int numero, int direction) {
+		int a = this.arete[4 * numero + direction];
+		return a == -1 ? null : this.aretes.get(a);
+	}
+
+	/**
+	 * Donne le pas de l'arête edgeThrough(numero, direction) qui arrive dans une case de couloir
+	 *
+	 * @param numero le numéro de la case de couloir
+	 * @param direction la direction dans laquelle on est entré dans la case
+	 * @return le pas, de 0 a la longueur de l'arête - 2
+	 * @pre edgeThrough(numero, direction) != null
+	 */
+	public int stepOf(int numero, int direction) {
+		return this.pas[4 * numero + direction];
+	}
+
+	/**
+	 * Donne la direction dans laquelle on sort d'une case de couloir
+	 *
+	 * @param numero le numéro de la case de couloir
+	 * @param direction la direction dans laquelle on est entré dans la case
+	 * @return la sortie qui ne fait pas demi-tour (UP, DOWN, LEFT ou RIGHT de CompiledMap)
+	 * @pre !isNode(numero)
+	 */
+	public int corridorExit(int numero, int direction) {
+		assert !this.isNode(numero) : "Precondition non respectée : la case est un carrefour";
+		int retour = direction ^ 1; // UP <-> DOWN, LEFT <-> RIGHT
+		for (int dir = 0; dir < 4; dir++) {
+			if (dir != retour && this.map.next(numero, dir) != -1) {
+				return dir;
+			}
+		}
+		return retour;
+	}
+}
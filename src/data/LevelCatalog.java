@@ -0,0 +1,115 @@
+package data;
+import java.io.*;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Catalogue des niveaux : les fichiers mapN.map et mapN.cmap d'un dossier sont recherchés une seule fois,
+ * puis chaque niveau est compilé (voir CompiledMap) la premiere fois qu'il est demandé.
+ * Un niveau qui revient réutilise sa forme compilée.
+ * Un fichier .cmap au moins aussi récent que le .map du meme niveau est chargé a la place du texte.
+ *
+ * @inv size() > 0
+ */
+public class LevelCatalog {
+
+	/** Le dossier des niveaux du jeu */
+	public static final String DOSSIER = "./doc";
+	private static final Pattern NOM_MAP = Pattern.compile("map(\\d+)\\.c?map");
+
+	private static LevelCatalog catalogSingleton;
+
+	/** Les fichiers des niveaux (sans extension), dans l'ordre de leur numéro */
+	private String[] fichiers;
+	/** Les niveaux déjà compilés */
+	private CompiledMap[] niveaux;
+
+	/**
+	 * Getter pour le catalogue des niveaux du jeu (créé au premier appel)
+	 *
+	 * @return le catalogue du dossier DOSSIER
+	 */
+	public static synchronized LevelCatalog getCatalog() {
+		if (catalogSingleton == null) {
+			catalogSingleton = new LevelCatalog(DOSSIER);
+		}
+		return catalogSingleton;
+	}
+
+	/**
+	 * Recherche les fichiers mapN.map et mapN.cmap d'un dossier
+	 *
+	 * @param dossier le dossier des niveaux
+	 */
+	public LevelCatalog(String dossier) {
+		TreeSet<Integer> numeros = new TreeSet<Integer>();
+		String[] noms = new File(dossier).list();
+		if (noms != null) {
+			for (String nom : noms) {
+				Matcher m = NOM_MAP.matcher(nom);
+				if (m.matches()) {
+					numeros.add(Integer.parseInt(m.group(1)));
+				}
+			}
+		}
+		this.fichiers = new String[numeros.size()];
+		int i = 0;
+		for (int numero : numeros) {
+			this.fichiers[i++] = dossier + "/map" + numero;
+		}
+		this.niveaux = new CompiledMap[this.fichiers.length];
+		this.invariant();
+	}
+
+	/**
+	 * Getter pour le nombre de niveaux
+	 *
+	 * @return le nombre de fichiers .map trouvés
+	 */
+	public int size() {
+		return this.fichiers.length;
+	}
+
+	/**
+	 * Getter pour un niveau, compilé a la premiere demande
+	 *
+	 * @param lvl le niveau, de 1 a size()
+	 * @return la forme compilée du niveau
+	 * @pre lvl > 0 && lvl <= size()
+	 */
+	public synchronized CompiledMap get(int lvl) {
+		assert lvl > 0 && lvl <= this.size() : "Precondition non respectée : niveau inexistant";
+		if (this.niveaux[lvl - 1] == null) {
+			File texte = new File(this.fichiers[lvl - 1] + ".map");
+			File binaire = new File(this.fichiers[lvl - 1] + ".cmap");
+			try {
+				if (binaire.exists() && (!texte.exists() || binaire.lastModified() >= texte.lastModified())) {
+					this.niveaux[lvl - 1] = CompiledMap.load(binaire.getPath());
+				}
+				else {
+					this.niveaux[lvl - 1] = CompiledMap.compile(texte.getPath(), lvl);
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException("Erreur lors de la lecture de " + this.fichiers[lvl - 1], e);
+			}
+		}
+		return this.niveaux[lvl - 1];
+	}
+
+	/**
+	 * Compile tous les niveaux
+	 */
+	public void preload() {
+		for (int lvl = 1; lvl <= this.size(); lvl++) {
+			this.get(lvl);
+		}
+	}
+
+	protected void invariant() {
+		assert this.fichiers.length > 0 : "Invariant violé : aucun fichier .map";
+	}
+
+}
@@ -1,7 +1,6 @@
 package data;
-import java.io.*;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 
 import logic.PacManLauncher;
 import logic.Pacman;
@@ -33,39 +32,41 @@ public class Map {
 	private MapGenerate theMap;
 	/** La couleur des mur de la map */
 	private String couleurMur;
-	/** Le nom du fichier .map */
-	private String mapFile;
 	/** Le nombre de gomme présent sur la map */
 	private int nbrGomme;
 	/** La position sur la map de chaque fantôme en début de niveau : Un liste de couple (x,y) */
 	private ArrayList<int[]> ghosts;
-	/** Paires cases visibles */
-	private HashSet<String> visible;
+	/** Le niveau compilé (cases de départ, visibilité, distances), partagé entre les parties du meme niveau */
+	private CompiledMap level;
+	/** Taille d'une case sans affichage : deux pas de pacman et des fantomes, comme sur une map de 25 cases */
+	public static final int TAILLE_CASE_VIRTUELLE = 2 * Pacman.SPEED_PACMAN;
+	/** Les figures de chaque niveau déjà joué */
+	private static final HashMap<CompiledMap, MapGenerate> FIGURES = new HashMap<CompiledMap, MapGenerate>();
 	private PacManLauncher pml;
 	private BeliefState state;
 	private ArrayList<BeliefState> visibleBeliefState;
 	private ArrayList<int[]> gamePositions;
+	/** Type de chaque case, utilisé par la logique du jeu (colisions, croisements), les figures ne servant qu'au dessin */
+	private byte[][] tiles;
+
+	/** Types de case de tiles */
+	public static final byte TILE_VIDE = 0;
+	public static final byte TILE_MUR = 1;
+	public static final byte TILE_GOMME = 2;
+	public static final byte TILE_SUPER_GOMME = 3;
 
 	/**
-	 * Constructeur de la classe Map, il creer un niveau du jeu a partir d'un fichier
+	 * Constructeur de la classe Map, il creer un niveau du jeu a partir du catalogue des niveaux
 	 *
 	 * @param mapName le numéro de la map a charger
 	 * @pre mapNumber > 0
 	 */
 	public Map(int mapNumber, PacManLauncher pml) {
-		this.pml = pml;
-		assert mapNumber > 0 : "Precondition non respectée : numéro de la map négatif";
-		this.mapFile = "./doc/map"+ mapNumber +".map";
-		this.nbrGomme = 0;
-		this.ghosts = new ArrayList<int[]>();
-		this.visibleBeliefState = new ArrayList<BeliefState>();
-		this.gamePositions = new ArrayList<int[]>();
-		this.createMap();
-		this.invariant();
+		this(LevelCatalog.getCatalog().get(mapNumber), pml);
 	}
 
 	/*******************************************************************
-  Un fichier map.txt définira un niveau de jeu
+  Un fichier map.txt définira un niveau de jeu (voir CompiledMap)
   La première ligne contient les parametre nbCase, couleur du mur ...
                       # = un mur
                       . = une gomme
@@ -76,143 +77,80 @@ public class Map {
 	 *******************************************************************/
 
 	/**
-	 * Cette fonction est appellée par le constructeur afin de lire le fichier .map et d'initialiser tout les parametres
+	 * Constructeur de la classe Map, il creer un niveau du jeu a partir de sa forme compilée
+	 * seules les cases et les gommes restantes sont propres a la partie, le reste est partagé avec la forme compilée
 	 *
-	 * @post nbrGomme > 0
-	 * @post pacmanX > 0
-	 * @post pacmanY > 0
+	 * @param level le niveau compilé
 	 * @post couleurMur == "blue" || couleurMur == "green" || couleurMur == "pink"
 	 */
-	private void createMap(){
-		try{
-			// Ouverture du fichier pour la lecture
-			InputStream ips=new FileInputStream(this.mapFile);
-			InputStreamReader ipsr=new InputStreamReader(ips);
-			BufferedReader br=new BufferedReader(ipsr);
-
-			boolean firstLine = true;        // La premiere ligne contient des parametres spéciaux
-			String ligne;                    // La ligne suivante à lire
-			int i = 0;                       // La ligne de la map
- 
-			
-			// On lit toute les lignes du fichier
-			while ((ligne=br.readLine())!=null){
-				//Traitement spéciale pour la première ligne
-				if(firstLine) {
-					firstLine = false;
-					String[] param = ligne.split(";");
-					this.nbCases = Integer.parseInt(param[0]);
-					this.tailleCase = this.WIDTH / this.nbCases;
-					this.couleurMur = param[1];
-					this.theMap = new MapGenerate(this.nbCases);
-					this.visible = new HashSet<String>();
-					this.state = new BeliefState(this.nbCases, this.pml.getPacman() != null? this.pml.getPacman().getScore(): 0, this.pml.getPacman() != null? this.pml.getPacman().getLife(): Pacman.LIFE_START);
-				}
-				else {
-					int j = 0;                   // La colonne de la map
-					int tmpx = 0;                // Variable utilisée pour stocké la position en x d'une figure
-					int tmpy = 0;                // Variable utilisée pour stocké la position en y d'une figure
-					int[] posGhost = null;
-
-					String[] param = ligne.split("");
-					for (String str : param) {
-						tmpx = j*this.tailleCase;  // Calcule de la position de la figure
-						tmpy = i*this.tailleCase;  // Calcule de la postion de la figure
-						// Voir description des symboles ci-dessus
-						switch (str) {
-						case "#" :
-							this.theMap.setFigure(i,j,new Wall(this.tailleCase, tmpx, tmpy, this.couleurMur));
-							break;
-						case "." :
-							this.theMap.setFigure(i,j,new Gomme(this.tailleCase, tmpx, tmpy, false));
-							this.nbrGomme += 1;
-							this.visible.add(i+","+j+";"+i+","+j);
-							for(int k = i - 1; k > -1 && this.visible.contains(k+","+j+";"+(i-1)+","+j); k--) {
-								this.visible.add(k+","+j+";"+i+","+j);
-							}
-							for(int k = j - 1; k > -1 && this.visible.contains(i+","+k+";"+i+","+(j-1)); k--) {
-								this.visible.add(i+","+k+";"+i+","+j);
-							}
-							int [] pos1 = {i,j};
-							this.gamePositions.add(pos1);
-							break;
-						case "*" :
-							this.theMap.setFigure(i,j,new Gomme(this.tailleCase, tmpx, tmpy, true));
-							this.nbrGomme += 1;
-							this.visible.add(i+","+j+";"+i+","+j);
-							for(int k = i - 1; k > -1 && this.visible.contains(k+","+j+";"+(i-1)+","+j); k--) {
-								this.visible.add(k+","+j+";"+i+","+j);
-							}
-							for(int k = j - 1; k > -1 && this.visible.contains(i+","+k+";"+i+","+(j-1)); k--) {
-								this.visible.add(i+","+k+";"+i+","+j);
-							}
-							int [] pos2 = {i,j};
-							this.gamePositions.add(pos2);
-							break;
-						case "O" :
-							this.theMap.setFigure(i,j,new Gomme(this.tailleCase, tmpx, tmpy));
-							this.visible.add(i+","+j+";"+i+","+j);
-							for(int k = i - 1; k > -1 && this.visible.contains(k+","+j+";"+(i-1)+","+j); k--) {
-								this.visible.add(k+","+j+";"+i+","+j);
-							}
-							for(int k = j - 1; k > -1 && this.visible.contains(i+","+k+";"+i+","+(j-1)); k--) {
-								this.visible.add(i+","+k+";"+i+","+j);
-							}
-							int [] pos3 = {i,j};
-							this.gamePositions.add(pos3);
-							break;
-						case "P" :
-							this.theMap.setFigure(i,j,new Gomme(this.tailleCase, tmpx, tmpy));
-							this.pacmanX = tmpx;
-							this.pacmanY = tmpy;
-							this.visible.add(i+","+j+";"+i+","+j);
-							for(int k = i - 1; k > -1 && this.visible.contains(k+","+j+";"+(i-1)+","+j); k--) {
-								this.visible.add(k+","+j+";"+i+","+j);
-							}
-							for(int k = j - 1; k > -1 && this.visible.contains(i+","+k+";"+i+","+(j-1)); k--) {
-								this.visible.add(i+","+k+";"+i+","+j);
-							}
-							int [] pos4 = {i,j};
-							this.gamePositions.add(pos4);
-							break;
-						case "F" :
-							this.theMap.setFigure(i,j,new Gomme(this.tailleCase, tmpx, tmpy));
-							posGhost = new int[2];
-							posGhost[0] = tmpx;
-							posGhost[1] = tmpy;
-							this.ghosts.add(posGhost);
-							this.visible.add(i+","+j+";"+i+","+j);
-							for(int k = i - 1; k > -1 && this.visible.contains(k+","+j+";"+(i-1)+","+j); k--) {
-								this.visible.add(k+","+j+";"+i+","+j);
-							}
-							for(int k = j - 1; k > -1 && this.visible.contains(i+","+k+";"+i+","+(j-1)); k--) {
-								this.visible.add(i+","+k+";"+i+","+j);
-							}
-							int [] pos5 = {i,j};
-							this.gamePositions.add(pos5);
-							break;
-						}
-						this.state.modifyMap(i, j, str.charAt(0));
-						j++;
-					}
-					i++;
-				}
-			}
-			br.close();
-		}
-		catch (Exception e){
-			System.out.println(e.toString());
+	public Map(CompiledMap level, PacManLauncher pml) {
+		this.pml = pml;
+		this.level = level;
+		this.nbCases = level.getNbCases();
+		// sans affichage la taille des cases ne depend pas de celle de la fenetre, les maps peuvent etre aussi grandes que voulu
+		this.tailleCase = Canvas.isHeadless() ? Map.TAILLE_CASE_VIRTUELLE : this.WIDTH / this.nbCases;
+		this.couleurMur = level.getCouleurMur();
+		this.nbrGomme = level.getNbrGomme();
+		this.tiles = level.copyTiles();
+		this.pacmanX = level.getPacmanColonne() * this.tailleCase;
+		this.pacmanY = level.getPacmanLigne() * this.tailleCase;
+		this.ghosts = new ArrayList<int[]>();
+		for (int[] pos : level.getGhosts()) {
+			int[] posGhost = {pos[1] * this.tailleCase, pos[0] * this.tailleCase};
+			this.ghosts.add(posGhost);
 		}
-		assert nbrGomme > 0 : "Post condition non respectée : nombre de gomme nul";
-		assert pacmanX > 0 : "Post condition non respectée : pacman non initialisé";
-		assert pacmanY > 0 : "Post condition non respectée : pacman non initialisé";
+		this.gamePositions = level.getGamePositions();
+		this.theMap = Canvas.isHeadless() ? null : Map.figures(level, this.tailleCase);
+		this.state = BeliefState.fromLevel(level, this.pml.getPacman() != null? this.pml.getPacman().getScore(): 0, this.pml.getPacman() != null? this.pml.getPacman().getLife(): Pacman.LIFE_START);
+		this.visibleBeliefState = new ArrayList<BeliefState>();
 		assert couleurMur == "blue" || couleurMur == "green" || couleurMur == "pink" : "Post condition non respectée : Mauvaise couleur de mur";
 
 		this.invariant();
-		BeliefState.setStaticVariables(this.gamePositions, this.visible, this.pacmanX, this.pacmanY, this.ghosts, this.tailleCase, this.nbCases);
+		BeliefState.setStaticVariables(level, this.pacmanX, this.pacmanY, this.ghosts, this.tailleCase);
 		this.visibleBeliefState.add(new BeliefState(this.state, false));
 	}
-	
+
+	/**
+	 * Donne les figures d'un niveau, créées la premiere fois que le niveau est joué
+	 * puis remises dans leur état de début de niveau (gommes replacées) les fois suivantes
+	 *
+	 * @param level le niveau compilé
+	 * @param tailleCase la taille des cases
+	 * @return les figures de la map
+	 */
+	private static MapGenerate figures(CompiledMap level, int tailleCase) {
+		MapGenerate theMap = Map.FIGURES.get(level);
+		if (theMap != null) {
+			theMap.reset();
+			return theMap;
+		}
+		theMap = new MapGenerate(level.getNbCases());
+		for (int i = 0; i < level.getNbCases(); i++) {
+			for (int j = 0; j < level.getNbCases(); j++) {
+				int tmpx = j*tailleCase;  // Calcule de la position de la figure
+				int tmpy = i*tailleCase;  // Calcule de la postion de la figure
+				switch (level.getCase(i, j)) {
+				case '#' :
+					theMap.setFigure(i,j,new Wall(tailleCase, tmpx, tmpy, level.getCouleurMur()));
+					break;
+				case '.' :
+					theMap.setFigure(i,j,new Gomme(tailleCase, tmpx, tmpy, false));
+					break;
+				case '*' :
+					theMap.setFigure(i,j,new Gomme(tailleCase, tmpx, tmpy, true));
+					break;
+				case 'O' :
+				case 'P' :
+				case 'F' :
+					theMap.setFigure(i,j,new Gomme(tailleCase, tmpx, tmpy));
+					break;
+				}
+			}
+		}
+		Map.FIGURES.put(level, theMap);
+		return theMap;
+	}
+
 	public ArrayList<int[]> getGamePosition() {
 		return this.gamePositions;
 	}
@@ -224,6 +162,41 @@ public class Map {
 		this.nbrGomme -= 1;
 	}
 
+	/**
+	 * Retire la gomme d'une case et decremente le nombre de gomme
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @pre getTile(ligne, colonne) == TILE_GOMME || getTile(ligne, colonne) == TILE_SUPER_GOMME
+	 */
+	public void pickGom (int ligne, int colonne) {
+		assert this.tiles[ligne][colonne] == Map.TILE_GOMME || this.tiles[ligne][colonne] == Map.TILE_SUPER_GOMME : "Precondition non respectée : pas de gomme sur la case";
+		this.tiles[ligne][colonne] = Map.TILE_VIDE;
+		this.pickGom();
+	}
+
+	/**
+	 * Getter pour le type d'une case
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @return TILE_VIDE, TILE_MUR, TILE_GOMME ou TILE_SUPER_GOMME
+	 */
+	public byte getTile (int ligne, int colonne) {
+		return this.tiles[ligne][colonne];
+	}
+
+	/**
+	 * Indique si une case est un mur
+	 *
+	 * @param ligne la ligne de la case
+	 * @param colonne la colonne de la case
+	 * @return vrai si la case est un mur
+	 */
+	public boolean isWall (int ligne, int colonne) {
+		return this.tiles[ligne][colonne] == Map.TILE_MUR;
+	}
+
 	/**
 	 * Getter pour le nombre courrant de gomme
 	 *
@@ -236,14 +209,16 @@ public class Map {
 	/**
 	 * Getter pour le tableau des figure de la map
 	 *
-	 * @return le tableau des figures
+	 * @return le tableau des figures, null sans affichage
 	 */
 	public Figure[][] getMap(){
-		return this.theMap.getTheMap();
+		return this.theMap != null ? this.theMap.getTheMap() : null;
 	}
 
 	public void draw () {
-		this.theMap.draw();
+		if (this.theMap != null) {
+			this.theMap.draw();
+		}
 	}
 
 	/**
@@ -255,6 +230,15 @@ public class Map {
 		return this.nbCases;
 	}
 
+	/**
+	 * Getter pour la taille de la map en pixels (largeur et hauteur)
+	 *
+	 * @return nbCases * tailleCase
+	 */
+	public int getTaillePixels() {
+		return this.nbCases * this.tailleCase;
+	}
+
 	/**
 	 * Getter pour la taille des cases de la map
 	 *
@@ -297,16 +281,16 @@ public class Map {
 	}
 	
 	public boolean isVisible(int row1, int column1, int row2, int column2) {
-		//System.out.println("isVisible " + row1 + "," + column1 + ";" + row2 + "," + column2);
-		if(row1 == row2) {
-			//System.out.println("row " + row1 + " columns " + column1 + "," + column2);
-			return this.visible.contains(row1+","+Math.min(column1,column2)+";"+row2+","+Math.max(column1, column2));
-		}
-		if(column1 == column2) {
-			//System.out.println("column " + column1 + " rows " + row1 + "," + row2);
-			return this.visible.contains(Math.min(row1, row2)+","+column1+";"+Math.max(row1, row2)+","+column2);
-		}
-		return false;
+		return this.level.isVisible(row1, column1, row2, column2);
+	}
+
+	/**
+	 * Getter pour la forme compilée du niveau
+	 *
+	 * @return le niveau compilé
+	 */
+	public CompiledMap getLevel() {
+		return this.level;
 	}
 	
 	public PacManLauncher getPml() {
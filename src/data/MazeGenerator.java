@@ -0,0 +1,427 @@
+package data;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Générateur de labyrinthes pour les tests de charge : produit des maps au format .map (voir Map)
+ * a partir d'une graine, si bien que la meme graine et les memes paramètres donnent toujours la meme map.
+ *
+ * Les couloirs sont creusés sur les cases de coordonnées impaires par un parcours en profondeur aléatoire
+ * (un arbre couvrant, donc toutes les cases libres sont reliées), puis des murs entre deux couloirs sont
+ * ouverts pour créer des boucles et supprimer des culs-de-sac. Pacman ('P') est placé au hasard,
+ * les fantomes ('F') sur les cases les plus éloignées de lui, leurs voisines sont vidées ('O')
+ * et les super gommes ('*') sont placées de préférence au fond des culs-de-sac.
+ *
+ * @inv getTaille() >= TAILLE_MIN
+ */
+public class MazeGenerator {
+
+	/** La plus petite map générée */
+	public static final int TAILLE_MIN = 7;
+
+	private static final int[][] DIRECTIONS = {{-2, 0}, {2, 0}, {0, -2}, {0, 2}};
+
+	private long seed;
+	private int taille = 25;
+	private double densite = 1;//proportion des cases impaires creusées
+	private double boucles = 0.1;//probabilité d'ouvrir un mur entre deux couloirs
+	private double culsDeSac = 0.2;//proportion des culs-de-sac conservés
+	private int nbFantomes = 4;
+	private int nbSuperGommes = 4;
+	private String couleurMur = "blue";
+
+	/**
+	 * Crée un générateur avec les paramètres par défaut (25x25, 4 fantomes, 4 super gommes, murs bleus)
+	 *
+	 * @param seed la graine du générateur aléatoire
+	 */
+	public MazeGenerator(long seed) {
+		this.seed = seed;
+		this.invariant();
+	}
+
+	/**
+	 * Setter pour la taille de la map
+	 *
+	 * @param taille le nombre de cases d'un coté
+	 * @pre taille >= TAILLE_MIN
+	 */
+	public void setTaille(int taille) {
+		assert taille >= TAILLE_MIN : "Precondition non respectée : map trop petite";
+		this.taille = taille;
+		this.invariant();
+	}
+
+	/**
+	 * Setter pour la densité des couloirs
+	 *
+	 * @param densite la proportion des cases de coordonnées impaires creusées, entre 0 (exclu) et 1
+	 * @pre densite > 0 && densite <= 1
+	 */
+	public void setDensite(double densite) {
+		assert densite > 0 && densite <= 1 : "Precondition non respectée : densité hors de ]0, 1]";
+		this.densite = densite;
+	}
+
+	/**
+	 * Setter pour la proportion de boucles
+	 *
+	 * @param boucles la probabilité d'ouvrir chaque mur séparant deux couloirs, entre 0 et 1
+	 * @pre boucles >= 0 && boucles <= 1
+	 */
+	public void setBoucles(double boucles) {
+		assert boucles >= 0 && boucles <= 1 : "Precondition non respectée : boucles hors de [0, 1]";
+		this.boucles = boucles;
+	}
+
+	/**
+	 * Setter pour la proportion de culs-de-sac conservés
+	 *
+	 * @param culsDeSac 0 pour ouvrir tous les culs-de-sac qui peuvent l'etre, 1 pour tous les garder
+	 * @pre culsDeSac >= 0 && culsDeSac <= 1
+	 */
+	public void setCulsDeSac(double culsDeSac) {
+		assert culsDeSac >= 0 && culsDeSac <= 1 : "Precondition non respectée : culs-de-sac hors de [0, 1]";
+		this.culsDeSac = culsDeSac;
+	}
+
+	/**
+	 * Setter pour le nombre de fantomes
+	 *
+	 * @param nbFantomes le nombre de fantomes
+	 * @pre nbFantomes >= 0
+	 */
+	public void setNbFantomes(int nbFantomes) {
+		assert nbFantomes >= 0 : "Precondition non respectée : nombre de fantomes négatif";
+		this.nbFantomes = nbFantomes;
+	}
+
+	/**
+	 * Setter pour le nombre de super gommes
+	 *
+	 * @param nbSuperGommes le nombre de super gommes
+	 * @pre nbSuperGommes >= 0
+	 */
+	public void setNbSuperGommes(int nbSuperGommes) {
+		assert nbSuperGommes >= 0 : "Precondition non respectée : nombre de super gommes négatif";
+		this.nbSuperGommes = nbSuperGommes;
+	}
+
+	/**
+	 * Setter pour la couleur des murs
+	 *
+	 * @param couleurMur une couleur connue du Canvas ("blue", "violet", ...)
+	 */
+	public void setCouleurMur(String couleurMur) {
+		this.couleurMur = couleurMur;
+	}
+
+	/**
+	 * Getter pour la taille de la map
+	 *
+	 * @return le nombre de cases d'un coté
+	 */
+	public int getTaille() {
+		return this.taille;
+	}
+
+	/**
+	 * Génère les cases de la map
+	 *
+	 * @return les caracteres de la map, une ligne par ligne de la map
+	 * @throws IllegalStateException si la map n'a pas assez de cases libres pour pacman, les fantomes et une gomme
+	 */
+	public char[][] generate() {
+		Random rand = new Random(this.seed);
+		char[][] cases = new char[this.taille][this.taille];
+		for (char[] ligne : cases) {
+			Arrays.fill(ligne, '#');
+		}
+		int dernier = this.taille - 2;//derniere ligne (et colonne) ou un couloir peut etre creusé
+		int nbImpaires = (dernier + 1) / 2;
+		int objectif = Math.max(1, (int)Math.round(this.densite * nbImpaires * nbImpaires));
+
+		//parcours en profondeur aléatoire a partir d'une case impaire
+		ArrayList<int[]> pile = new ArrayList<int[]>();
+		int[] depart = {1 + 2 * rand.nextInt(nbImpaires), 1 + 2 * rand.nextInt(nbImpaires)};
+		cases[depart[0]][depart[1]] = '.';
+		pile.add(depart);
+		int creusees = 1;
+		int[] ordre = {0, 1, 2, 3};
+		while (!pile.isEmpty() && creusees < objectif) {
+			int[] courante = pile.get(pile.size() - 1);
+			melanger(ordre, rand);
+			boolean avance = false;
+			for (int d : ordre) {
+				int i = courante[0] + DIRECTIONS[d][0];
+				int j = courante[1] + DIRECTIONS[d][1];
+				if (i >= 1 && i <= dernier && j >= 1 && j <= dernier && cases[i][j] == '#') {
+					cases[(i + courante[0]) / 2][(j + courante[1]) / 2] = '.';
+					cases[i][j] = '.';
+					int[] suivante = {i, j};
+					pile.add(suivante);
+					creusees++;
+					avance = true;
+					break;
+				}
+			}
+			if (!avance) {
+				pile.remove(pile.size() - 1);
+			}
+		}
+
+		//boucles : murs entre deux couloirs ouverts au hasard
+		for (int i = 1; i <= dernier; i += 2) {
+			for (int j = 1; j <= dernier; j += 2) {
+				if (cases[i][j] == '#') {
+					continue;
+				}
+				if (i + 2 <= dernier && cases[i + 2][j] != '#' && cases[i + 1][j] == '#' && rand.nextDouble() < this.boucles) {
+					cases[i + 1][j] = '.';
+				}
+				if (j + 2 <= dernier && cases[i][j + 2] != '#' && cases[i][j + 1] == '#' && rand.nextDouble() < this.boucles) {
+					cases[i][j + 1] = '.';
+				}
+			}
+		}
+
+		//culs-de-sac : ouverts vers un autre couloir voisin quand il en existe un
+		ArrayList<int[]> fonds = new ArrayList<int[]>();
+		for (int i = 1; i <= dernier; i += 2) {
+			for (int j = 1; j <= dernier; j += 2) {
+				if (cases[i][j] == '#' || nbVoisinsLibres(cases, i, j) != 1) {
+					continue;
+				}
+				if (rand.nextDouble() >= this.culsDeSac) {
+					melanger(ordre, rand);
+					for (int d : ordre) {
+						int vi = i + DIRECTIONS[d][0];
+						int vj = j + DIRECTIONS[d][1];
+						int mi = i + DIRECTIONS[d][0] / 2;
+						int mj = j + DIRECTIONS[d][1] / 2;
+						if (vi >= 1 && vi <= dernier && vj >= 1 && vj <= dernier && cases[vi][vj] != '#' && cases[mi][mj] == '#') {
+							cases[mi][mj] = '.';
+							break;
+						}
+					}
+				}
+				if (nbVoisinsLibres(cases, i, j) == 1) {
+					int[] fond = {i, j};
+					fonds.add(fond);
+				}
+			}
+		}
+
+		//pacman au hasard, les fantomes sur les cases les plus éloignées
+		ArrayList<int[]> libres = new ArrayList<int[]>();
+		for (int i = 1; i <= dernier; i++) {
+			for (int j = 1; j <= dernier; j++) {
+				if (cases[i][j] != '#') {
+					int[] pos = {i, j};
+					libres.add(pos);
+				}
+			}
+		}
+		if (libres.size() < this.nbFantomes + 2) {
+			throw new IllegalStateException("Pas assez de cases libres (" + libres.size() + ") pour pacman, " + this.nbFantomes + " fantomes et une gomme");
+		}
+		int[] pacman = libres.get(rand.nextInt(libres.size()));
+		int[][] distances = distances(cases, pacman);
+		ArrayList<int[]> parDistance = new ArrayList<int[]>(libres);
+		parDistance.sort((a, b) -> distances[b[0]][b[1]] - distances[a[0]][a[1]]);
+		cases[pacman[0]][pacman[1]] = 'P';
+		for (int f = 0; f < this.nbFantomes; f++) {
+			int[] fantome = parDistance.get(f);
+			cases[fantome[0]][fantome[1]] = 'F';
+		}
+		int nbGommes = libres.size() - 1 - this.nbFantomes;
+		for (int f = 0; f < this.nbFantomes; f++) {//les fantomes ne démarrent pas a coté d'une gomme
+			int[] fantome = parDistance.get(f);
+			for (int[] d : DIRECTIONS) {
+				int i = fantome[0] + d[0] / 2;
+				int j = fantome[1] + d[1] / 2;
+				if (cases[i][j] == '.' && nbGommes > 1) {
+					cases[i][j] = 'O';
+					nbGommes--;
+				}
+			}
+		}
+
+		//super gommes au fond des culs-de-sac, puis au hasard
+		melanger(fonds, rand);
+		int restantes = this.nbSuperGommes;
+		for (int[] fond : fonds) {
+			if (restantes > 0 && cases[fond[0]][fond[1]] == '.') {
+				cases[fond[0]][fond[1]] = '*';
+				restantes--;
+			}
+		}
+		melanger(libres, rand);
+		for (int[] pos : libres) {
+			if (restantes > 0 && cases[pos[0]][pos[1]] == '.') {
+				cases[pos[0]][pos[1]] = '*';
+				restantes--;
+			}
+		}
+		assert estConnexe(cases, pacman) : "Postcondition non respectée : map non connexe";
+		return cases;
+	}
+
+	/**
+	 * Génère la map et la compile
+	 *
+	 * @param mapNumber le numéro du niveau
+	 * @return la map compilée
+	 */
+	public CompiledMap generateLevel(int mapNumber) {
+		return new CompiledMap(mapNumber, this.couleurMur, this.generate());
+	}
+
+	/**
+	 * Génère la map et l'écrit au format .map
+	 *
+	 * @param fichier le fichier a écrire
+	 * @throws IOException en cas d'erreur d'écriture
+	 */
+	public void write(String fichier) throws IOException {
+		char[][] cases = this.generate();
+		StringBuilder texte = new StringBuilder();
+		texte.append(this.taille).append(';').append(this.couleurMur).append(';');
+		for (char[] ligne : cases) {
+			texte.append("\r\n").append(ligne);
+		}
+		Files.write(Paths.get(fichier), texte.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static int nbVoisinsLibres(char[][] cases, int i, int j) {
+		int nb = 0;
+		for (int[] d : DIRECTIONS) {
+			if (cases[i + d[0] / 2][j + d[1] / 2] != '#') {
+				nb++;
+			}
+		}
+		return nb;
+	}
+
+	/**
+	 * Distances (en cases) depuis une case libre, -1 pour les cases non atteintes
+	 */
+	private static int[][] distances(char[][] cases, int[] depart) {
+		int[][] distances = new int[cases.length][cases.length];
+		for (int[] ligne : distances) {
+			Arrays.fill(ligne, -1);
+		}
+		ArrayDeque<int[]> file = new ArrayDeque<int[]>();
+		distances[depart[0]][depart[1]] = 0;
+		file.add(depart);
+		while (!file.isEmpty()) {
+			int[] pos = file.poll();
+			for (int[] d : DIRECTIONS) {
+				int i = pos[0] + d[0] / 2;
+				int j = pos[1] + d[1] / 2;
+				if (cases[i][j] != '#' && distances[i][j] < 0) {
+					distances[i][j] = distances[pos[0]][pos[1]] + 1;
+					int[] voisine = {i, j};
+					file.add(voisine);
+				}
+			}
+		}
+		return distances;
+	}
+
+	private static boolean estConnexe(char[][] cases, int[] pacman) {
+		int[][] distances = distances(cases, pacman);
+		for (int i = 0; i < cases.length; i++) {
+			for (int j = 0; j < cases.length; j++) {
+				if (cases[i][j] != '#' && distances[i][j] < 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void melanger(int[] tableau, Random rand) {
+		for (int i = tableau.length - 1; i > 0; i--) {
+			int k = rand.nextInt(i + 1);
+			int t = tableau[i];
+			tableau[i] = tableau[k];
+			tableau[k] = t;
+		}
+	}
+
+	private static void melanger(ArrayList<int[]> liste, Random rand) {
+		for (int i = liste.size() - 1; i > 0; i--) {
+			int k = rand.nextInt(i + 1);
+			liste.set(k, liste.set(i, liste.get(k)));
+		}
+	}
+
+	/**
+	 * Génère une map et l'écrit au format .map (et .cmap avec --cmap)
+	 * options :
+	 *   --size n         nombre de cases d'un coté (25 par défaut)
+	 *   --density d      proportion des cases impaires creusées (1 par défaut)
+	 *   --loops p        probabilité d'ouvrir un mur entre deux couloirs (0.1 par défaut)
+	 *   --dead-ends p    proportion des culs-de-sac conservés (0.2 par défaut)
+	 *   --ghosts n       nombre de fantomes (4 par défaut)
+	 *   --super n        nombre de super gommes (4 par défaut)
+	 *   --color c        couleur des murs (blue par défaut)
+	 *   --seed n         graine du générateur
+	 *   --cmap           écrit aussi la forme compilée
+	 *   fichier          le fichier .map a écrire (doc/mapN.map pour l'ajouter aux niveaux du jeu)
+	 */
+	public static void main(String[] args) {
+		long seed = 0;
+		int s = Arrays.asList(args).indexOf("--seed");
+		if (s >= 0 && s + 1 < args.length) {
+			seed = Long.parseLong(args[s + 1]);
+		}
+		MazeGenerator generateur = new MazeGenerator(seed);
+		String fichier = null;
+		boolean cmap = false;
+		for (int a = 0; a < args.length; a++) {
+			switch (args[a]) {
+			case "--size" : generateur.setTaille(Integer.parseInt(args[++a])); break;
+			case "--density" : generateur.setDensite(Double.parseDouble(args[++a])); break;
+			case "--loops" : generateur.setBoucles(Double.parseDouble(args[++a])); break;
+			case "--dead-ends" : generateur.setCulsDeSac(Double.parseDouble(args[++a])); break;
+			case "--ghosts" : generateur.setNbFantomes(Integer.parseInt(args[++a])); break;
+			case "--super" : generateur.setNbSuperGommes(Integer.parseInt(args[++a])); break;
+			case "--color" : generateur.setCouleurMur(args[++a]); break;
+			case "--seed" : a++; break;
+			case "--cmap" : cmap = true; break;
+			default : fichier = args[a];
+			}
+		}
+		if (fichier == null) {
+			System.out.println("Usage : java data.MazeGenerator [options] fichier.map");
+			return;
+		}
+		try {
+			generateur.write(fichier);
+			java.util.regex.Matcher numero = java.util.regex.Pattern.compile("map(\\d+)\\.map$").matcher(fichier);
+			CompiledMap map = CompiledMap.compile(fichier, numero.find() ? Integer.parseInt(numero.group(1)) : 0);
+			if (cmap) {
+				map.write(fichier.replaceAll("\\.map$", "") + ".cmap", false);
+			}
+			System.out.println(fichier + " : " + map.getNbCases() + "x" + map.getNbCases() + ", " + map.getGamePositions().size() + " cases libres, "
+					+ map.getNbrGomme() + " gommes, " + map.getGhosts().size() + " fantomes");
+		}
+		catch (IOException e) {
+			System.out.println("Erreur lors de l'écriture de " + fichier + " : " + e.getMessage());
+		}
+	}
+
+	protected void invariant() {
+		assert this.taille >= TAILLE_MIN : "Invariant violé : map trop petite";
+	}
+
+}
@@ -0,0 +1,147 @@
+package data;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Cette classe relit un journal de partie produit par ReplayRecorder.
+ * Le fichier est projeté en mémoire, la lecture des enregistrements ne fait donc aucune entrée/sortie.
+ *
+ * @inv buffer != null
+ */
+public class ReplayReader {
+
+	private MappedByteBuffer buffer;
+	private long graine;
+	private boolean avecLatence;
+	/** Latence de la derniere action de pacman lue (en ns), -1 si elle n'a pas été enregistrée */
+	private long derniereLatence;
+
+	/**
+	 * Ouvre un journal de partie
+	 *
+	 * @param fichier le fichier a relire
+	 */
+	public ReplayReader(String fichier) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fichier), StandardOpenOption.READ)) {
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (this.buffer.remaining() < 14 || this.buffer.getInt() != ReplayRecorder.MAGIC) {
+			throw new IOException(fichier + " n'est pas un replay");
+		}
+		byte version = this.buffer.get();
+		if (version != ReplayRecorder.VERSION) {
+			throw new IOException("Version de replay non supportée : " + version);
+		}
+		this.avecLatence = (this.buffer.get() & ReplayRecorder.FLAG_LATENCE) != 0;
+		this.graine = this.buffer.getLong();
+		this.derniereLatence = -1;
+		this.invariant();
+	}
+
+	/**
+	 * Getter pour la graine du generateur aleatoire de la partie enregistrée
+	 *
+	 * @return la graine
+	 */
+	public long getSeed() {
+		return this.graine;
+	}
+
+	/**
+	 * Indique si il reste des enregistrements a lire
+	 *
+	 * @return vrai si le journal n'est pas terminé
+	 */
+	public boolean hasNext() {
+		return this.buffer.hasRemaining();
+	}
+
+	/**
+	 * Lit le debut d'un niveau
+	 *
+	 * @return le numéro de la map, -1 si le journal est terminé
+	 */
+	public int nextLevel() {
+		if (!this.expect(ReplayRecorder.TAG_NIVEAU)) {
+			return -1;
+		}
+		return this.buffer.getInt();
+	}
+
+	/**
+	 * Lit la prochaine action de pacman
+	 *
+	 * @return la direction (PacManLauncher.UP/DOWN/LEFT/RIGHT), null si le journal est terminé
+	 */
+	public String nextPacmanMove() {
+		if (!this.expect(ReplayRecorder.TAG_PACMAN)) {
+			return null;
+		}
+		String toward = ReplayRecorder.decode(this.buffer.get());
+		if (this.avecLatence) {
+			long v = 0;
+			int decalage = 0;
+			byte b;
+			do {
+				b = this.buffer.get();
+				v |= ((long)(b & 0x7F)) << decalage;
+				decalage += 7;
+			} while ((b & 0x80) != 0);
+			this.derniereLatence = v;
+		}
+		return toward;
+	}
+
+	/**
+	 * Lit la prochaine direction choisie par un fantome
+	 *
+	 * @param id l'id du fantome qui doit choisir
+	 * @return la direction enregistrée
+	 * @throws IllegalStateException si le journal ne correspond pas a la partie rejouée
+	 */
+	public String nextGhostChoice(int id) {
+		if (!this.expect(ReplayRecorder.TAG_FANTOME)) {
+			throw new IllegalStateException("Replay désynchronisé : choix du fantome " + id + " absent");
+		}
+		int idLu = this.buffer.get();
+		if (idLu != id) {
+			throw new IllegalStateException("Replay désynchronisé : fantome " + idLu + " attendu a la place de " + id);
+		}
+		return ReplayRecorder.decode(this.buffer.get());
+	}
+
+	/**
+	 * Getter pour la latence de la derniere action de pacman lue
+	 *
+	 * @return la latence en ns, -1 si elle n'a pas été enregistrée
+	 */
+	public long getLastLatency() {
+		return this.derniereLatence;
+	}
+
+	/**
+	 * Consomme le type du prochain enregistrement si il correspond a celui attendu
+	 *
+	 * @return faux si le journal est terminé
+	 * @throws IllegalStateException si le prochain enregistrement est d'un autre type
+	 */
+	private boolean expect(byte tag) {
+		if (!this.buffer.hasRemaining()) {
+			return false;
+		}
+		byte lu = this.buffer.get();
+		if (lu != tag) {
+			throw new IllegalStateException("Replay désynchronisé : enregistrement '" + (char)tag + "' attendu, '" + (char)lu + "' lu");
+		}
+		return true;
+	}
+
+	protected void invariant() {
+		assert this.buffer != null : "Invariant violé : replay non chargé";
+	}
+
+}
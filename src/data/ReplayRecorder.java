@@ -0,0 +1,174 @@
+package data;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Cette classe enregistre une partie dans un journal binaire compact afin de pouvoir la rejouer
+ * (voir ReplayReader).
+ *
+ * Format du fichier :
+ *   en-tete  : MAGIC (int), VERSION (byte), drapeaux (byte), graine du generateur aleatoire (long)
+ *   puis une suite d'enregistrements commencant chacun par un octet de type :
+ *   TAG_NIVEAU  : numero de la map (int)
+ *   TAG_PACMAN  : action de pacman (byte) [+ latence de decision en ns (varint) si FLAG_LATENCE]
+ *   TAG_FANTOME : id du fantome (byte), direction choisie dans Ghost.chooseMove (byte)
+ *
+ * Les enregistrements sont ecrits dans un tampon direct qui n'est vidé dans le FileChannel que lorsqu'il est plein,
+ * l'enregistrement ne coute donc qu'une écriture en mémoire pendant la partie.
+ *
+ * @inv tampon != null
+ */
+public class ReplayRecorder {
+
+	/** Signature du fichier ("PMRP") */
+	public static final int MAGIC = 0x504D5250;
+	/** Version du format */
+	public static final byte VERSION = 1;
+	/** Drapeau indiquant que la latence de decision est enregistrée avec chaque action de pacman */
+	public static final byte FLAG_LATENCE = 1;
+	public static final byte TAG_NIVEAU = 'L';
+	public static final byte TAG_PACMAN = 'P';
+	public static final byte TAG_FANTOME = 'G';
+	/** Les directions dans l'ordre de leur codage */
+	private static final String[] DIRECTIONS = {"UP", "DOWN", "LEFT", "RIGHT"};
+	/** Taille du tampon d'ecriture */
+	private static final int TAILLE_TAMPON = 1 << 16;
+
+	private FileChannel channel;
+	private ByteBuffer tampon;
+	private boolean avecLatence;
+
+	/**
+	 * Ouvre un nouveau journal de partie (le fichier est ecrasé s'il existe)
+	 *
+	 * @param fichier le fichier dans lequel enregistrer la partie
+	 * @param graine la graine du generateur aleatoire de la partie
+	 * @param avecLatence vrai si la latence de decision doit etre enregistrée
+	 */
+	public ReplayRecorder(String fichier, long graine, boolean avecLatence) throws IOException {
+		this.channel = FileChannel.open(Paths.get(fichier), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+		this.avecLatence = avecLatence;
+		this.tampon.putInt(MAGIC);
+		this.tampon.put(VERSION);
+		this.tampon.put(avecLatence ? FLAG_LATENCE : 0);
+		this.tampon.putLong(graine);
+		this.invariant();
+	}
+
+	/**
+	 * Code une direction sur un octet
+	 *
+	 * @param toward la direction (PacManLauncher.UP/DOWN/LEFT/RIGHT)
+	 * @return le code de la direction
+	 */
+	public static byte encode(String toward) {
+		for (byte i = 0; i < DIRECTIONS.length; i++) {
+			if (DIRECTIONS[i].equals(toward)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Direction inconnue : " + toward);
+	}
+
+	/**
+	 * Decode une direction codée par encode
+	 *
+	 * @param code le code de la direction
+	 * @return la direction
+	 */
+	public static String decode(byte code) {
+		return DIRECTIONS[code];
+	}
+
+	/**
+	 * Enregistre le debut d'un niveau
+	 *
+	 * @param mapNumber le numéro de la map chargée
+	 */
+	public void recordLevel(int mapNumber) {
+		this.reserve(5);
+		this.tampon.put(TAG_NIVEAU);
+		this.tampon.putInt(mapNumber);
+	}
+
+	/**
+	 * Enregistre une action de pacman
+	 *
+	 * @param toward la direction choisie
+	 * @param latenceNanos le temps de decision en nanosecondes (ignoré si la latence n'est pas enregistrée)
+	 */
+	public void recordPacman(String toward, long latenceNanos) {
+		this.reserve(12);
+		this.tampon.put(TAG_PACMAN);
+		this.tampon.put(ReplayRecorder.encode(toward));
+		if (this.avecLatence) {
+			long v = Math.max(0, latenceNanos);
+			while ((v & ~0x7FL) != 0) {
+				this.tampon.put((byte)((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			this.tampon.put((byte)v);
+		}
+	}
+
+	/**
+	 * Enregistre la direction choisie par un fantome a un croisement
+	 *
+	 * @param id l'id du fantome
+	 * @param toward la direction choisie
+	 */
+	public void recordGhost(int id, String toward) {
+		this.reserve(3);
+		this.tampon.put(TAG_FANTOME);
+		this.tampon.put((byte)id);
+		this.tampon.put(ReplayRecorder.encode(toward));
+	}
+
+	/**
+	 * Vide le tampon si il ne reste pas assez de place pour n octets
+	 */
+	private void reserve(int n) {
+		if (this.tampon.remaining() < n) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * Ecrit le contenu du tampon dans le fichier
+	 */
+	public void flush() {
+		this.tampon.flip();
+		try {
+			while (this.tampon.hasRemaining()) {
+				this.channel.write(this.tampon);
+			}
+		}
+		catch (IOException exception) {
+			System.out.println ("Erreur lors de l'ecriture du replay : " + exception.getMessage());
+		}
+		this.tampon.clear();
+	}
+
+	/**
+	 * Vide le tampon et ferme le fichier
+	 */
+	public void close() {
+		this.flush();
+		try {
+			this.channel.close();
+		}
+		catch (IOException exception) {
+			System.out.println ("Erreur lors de l'ecriture du replay : " + exception.getMessage());
+		}
+	}
+
+	protected void invariant() {
+		assert this.tampon != null : "Invariant violé : tampon non initialisé";
+	}
+
+}
@@ -0,0 +1,481 @@
+package data;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Historique de toutes les parties jouées, a coté du meilleur score (voir Score).
+ * Chaque partie est ajoutée a la fin d'un fichier texte, une ligne par partie :
+ *   date;graine;maps;config;score;niveaux;coups;moyenne;p99
+ * (date en ms depuis 1970, maps la suite des niveaux joués comme "1-2-3", config la configuration de la partie,
+ * moyenne et p99 les temps de décision de l'IA en ms). Le fichier n'est jamais réécrit.
+ *
+ * Au démarrage le fichier est relu une fois pour construire un index en mémoire : une colonne par champ,
+ * les parties triées par score et les sommes cumulées des scores et des temps de décision,
+ * si bien que les meilleures parties et les moyennes glissantes ne relisent jamais le fichier.
+ *
+ * @inv size() >= 0
+ */
+public class RunHistory {
+
+	/** Le fichier de l'historique du jeu */
+	public static final String HISTORYFILE = "./doc/runs.log";
+
+	private static RunHistory historySingleton;
+
+	private String fichier;
+	private int size;
+	//une colonne par champ
+	private long[] dates;
+	private long[] graines;
+	private int[] maps;//numéro dans le dictionnaire textes
+	private int[] configs;//numéro dans le dictionnaire textes
+	private int[] scores;
+	private int[] niveaux;
+	private int[] coups;
+	private float[] moyennes;
+	private float[] p99s;
+	//index
+	private int[] parScore;//les parties de la meilleure a la moins bonne
+	private long[] sommeScores;//sommeScores[k] : somme des scores des k premieres parties
+	private double[] sommeMoyennes;//sommeMoyennes[k] : somme des temps moyens des k premieres parties
+	private ArrayList<String> textes;
+	private HashMap<String, Integer> numeros;
+	private HashMap<Integer, Stats> parConfig;
+
+	/**
+	 * Une partie de l'historique
+	 */
+	public static class Run {
+		private final long date, graine;
+		private final String maps, config;
+		private final int score, niveaux, coups;
+		private final double moyenne, p99;
+
+		/**
+		 * @param date la date de la fin de la partie, en ms depuis 1970
+		 * @param graine la graine de la partie
+		 * @param maps la suite des niveaux joués, comme "1-2-3"
+		 * @param config la configuration de la partie (sans ';')
+		 * @param score le score final
+		 * @param niveaux le nombre de niveaux terminés
+		 * @param coups le nombre de coups joués par l'IA
+		 * @param moyenne le temps de décision moyen, en ms
+		 * @param p99 le 99e centile du temps de décision, en ms
+		 */
+		public Run(long date, long graine, String maps, String config, int score, int niveaux, int coups, double moyenne, double p99) {
+			assert maps.indexOf(';') < 0 && config.indexOf(';') < 0 : "Precondition non respectée : ';' dans un champ";
+			this.date = date;
+			this.graine = graine;
+			this.maps = maps;
+			this.config = config;
+			this.score = score;
+			this.niveaux = niveaux;
+			this.coups = coups;
+			this.moyenne = moyenne;
+			this.p99 = p99;
+		}
+
+		public long getDate() {
+			return this.date;
+		}
+
+		public long getGraine() {
+			return this.graine;
+		}
+
+		public String getMaps() {
+			return this.maps;
+		}
+
+		public String getConfig() {
+			return this.config;
+		}
+
+		public int getScore() {
+			return this.score;
+		}
+
+		public int getNiveaux() {
+			return this.niveaux;
+		}
+
+		public int getCoups() {
+			return this.coups;
+		}
+
+		public double getMoyenne() {
+			return this.moyenne;
+		}
+
+		public double getP99() {
+			return this.p99;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d;%d;%s;%s;%d;%d;%d;%.3f;%.3f", this.date, this.graine, this.maps, this.config,
+					this.score, this.niveaux, this.coups, this.moyenne, this.p99);
+		}
+	}
+
+	/**
+	 * Les statistiques des parties d'une configuration
+	 */
+	public static class Stats {
+		private final String config;
+		private int parties;
+		private int meilleurScore;
+		private long sommeScores;
+		private long sommeNiveaux;
+		private double sommeMoyennes;
+		private double pireP99;
+
+		private Stats(String config) {
+			this.config = config;
+		}
+
+		private void add(int score, int niveaux, double moyenne, double p99) {
+			this.parties++;
+			this.meilleurScore = Math.max(this.meilleurScore, score);
+			this.sommeScores += score;
+			this.sommeNiveaux += niveaux;
+			this.sommeMoyennes += moyenne;
+			this.pireP99 = Math.max(this.pireP99, p99);
+		}
+
+		public String getConfig() {
+			return this.config;
+		}
+
+		public int getParties() {
+			return this.parties;
+		}
+
+		public int getMeilleurScore() {
+			return this.meilleurScore;
+		}
+
+		public double getScoreMoyen() {
+			return (double)this.sommeScores / this.parties;
+		}
+
+		public double getNiveauxMoyens() {
+			return (double)this.sommeNiveaux / this.parties;
+		}
+
+		public double getMoyenne() {
+			return this.sommeMoyennes / this.parties;
+		}
+
+		public double getPireP99() {
+			return this.pireP99;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s : %d parties, meilleur score %d, score moyen %.1f, %.2f niveaux, decision %.3fms (p99 max %.3fms)",
+					this.config, this.parties, this.meilleurScore, this.getScoreMoyen(), this.getNiveauxMoyens(), this.getMoyenne(), this.pireP99);
+		}
+	}
+
+	/**
+	 * Getter pour l'historique du jeu (relu au premier appel)
+	 *
+	 * @return l'historique du fichier HISTORYFILE
+	 */
+	public static synchronized RunHistory getHistory() {
+		if (historySingleton == null) {
+			historySingleton = new RunHistory(HISTORYFILE);
+		}
+		return historySingleton;
+	}
+
+	/**
+	 * Relit un historique et construit son index. Les lignes illisibles (une fin de fichier
+	 * coupée par exemple) sont ignorées.
+	 *
+	 * @param fichier le fichier de l'historique, créé au premier ajout s'il n'existe pas
+	 */
+	public RunHistory(String fichier) {
+		this.fichier = fichier;
+		this.dates = new long[64];
+		this.graines = new long[64];
+		this.maps = new int[64];
+		this.configs = new int[64];
+		this.scores = new int[64];
+		this.niveaux = new int[64];
+		this.coups = new int[64];
+		this.moyennes = new float[64];
+		this.p99s = new float[64];
+		this.parScore = new int[64];
+		this.sommeScores = new long[65];
+		this.sommeMoyennes = new double[65];
+		this.textes = new ArrayList<String>();
+		this.numeros = new HashMap<String, Integer>();
+		this.parConfig = new HashMap<Integer, Stats>();
+		File f = new File(fichier);
+		if (f.exists()) {
+			try {
+				BufferedReader br = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8);
+				String ligne;
+				while ((ligne = br.readLine()) != null) {
+					Run run = lire(ligne);
+					if (run != null) {
+						this.indexer(run, false);
+					}
+				}
+				br.close();
+			}
+			catch (IOException exception) {
+				System.out.println("Erreur lors de la lecture de l'historique : " + exception.getMessage());
+			}
+			this.trierParScore();
+		}
+		this.invariant();
+	}
+
+	/**
+	 * Ajoute une partie a la fin du fichier et a l'index
+	 *
+	 * @param run la partie a ajouter
+	 */
+	public synchronized void add(Run run) {
+		try {
+			//une seule écriture en mode ajout par partie : les lignes de plusieurs processus ne se mélangent pas
+			Files.write(Paths.get(this.fichier), (run + "\n").getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+		catch (IOException exception) {
+			System.out.println("Erreur lors de l'ecriture de l'historique : " + exception.getMessage());
+		}
+		this.indexer(run, true);
+		this.invariant();
+	}
+
+	/**
+	 * Getter pour le nombre de parties
+	 *
+	 * @return le nombre de parties de l'historique
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Getter pour une partie
+	 *
+	 * @param k le rang de la partie, de 0 (la plus ancienne) a size() - 1
+	 * @return la partie
+	 * @pre k >= 0 && k < size()
+	 */
+	public synchronized Run get(int k) {
+		assert k >= 0 && k < this.size : "Precondition non respectée : partie inexistante";
+		return new Run(this.dates[k], this.graines[k], this.textes.get(this.maps[k]), this.textes.get(this.configs[k]),
+				this.scores[k], this.niveaux[k], this.coups[k], this.moyennes[k], this.p99s[k]);
+	}
+
+	/**
+	 * Les meilleures parties
+	 *
+	 * @param n le nombre de parties voulues
+	 * @param config la configuration des parties, null pour toutes les parties
+	 * @return au plus n parties, de la meilleure a la moins bonne
+	 */
+	public synchronized List<Run> best(int n, String config) {
+		ArrayList<Run> meilleures = new ArrayList<Run>();
+		Integer numero = config == null ? null : this.numeros.get(config);
+		if (config != null && numero == null) {
+			return meilleures;
+		}
+		for (int r = 0; r < this.size && meilleures.size() < n; r++) {
+			int k = this.parScore[r];
+			if (numero == null || this.configs[k] == numero) {
+				meilleures.add(this.get(k));
+			}
+		}
+		return meilleures;
+	}
+
+	/**
+	 * Le score moyen des dernieres parties
+	 *
+	 * @param n le nombre de parties
+	 * @return le score moyen des n dernieres parties (de toutes s'il y en a moins), 0 sans partie
+	 */
+	public synchronized double rollingScore(int n) {
+		int debut = Math.max(0, this.size - n);
+		return this.size == debut ? 0 : (double)(this.sommeScores[this.size] - this.sommeScores[debut]) / (this.size - debut);
+	}
+
+	/**
+	 * Le temps de décision moyen des dernieres parties
+	 *
+	 * @param n le nombre de parties
+	 * @return la moyenne des temps de décision moyens des n dernieres parties, en ms, 0 sans partie
+	 */
+	public synchronized double rollingLatency(int n) {
+		int debut = Math.max(0, this.size - n);
+		return this.size == debut ? 0 : (this.sommeMoyennes[this.size] - this.sommeMoyennes[debut]) / (this.size - debut);
+	}
+
+	/**
+	 * Les statistiques de chaque configuration
+	 *
+	 * @return une entrée par configuration, dans l'ordre de leur premiere partie
+	 */
+	public synchronized List<Stats> byConfig() {
+		ArrayList<Stats> stats = new ArrayList<Stats>();
+		for (int numero = 0; numero < this.textes.size(); numero++) {
+			Stats s = this.parConfig.get(numero);
+			if (s != null) {
+				stats.add(s);
+			}
+		}
+		return stats;
+	}
+
+	private static Run lire(String ligne) {
+		String[] champs = ligne.split(";", -1);
+		if (champs.length != 9) {
+			return null;
+		}
+		try {
+			return new Run(Long.parseLong(champs[0]), Long.parseLong(champs[1]), champs[2], champs[3], Integer.parseInt(champs[4]),
+					Integer.parseInt(champs[5]), Integer.parseInt(champs[6]), Double.parseDouble(champs[7]), Double.parseDouble(champs[8]));
+		}
+		catch (NumberFormatException exception) {
+			return null;
+		}
+	}
+
+	private int numero(String texte) {
+		Integer numero = this.numeros.get(texte);
+		if (numero == null) {
+			numero = this.textes.size();
+			this.textes.add(texte);
+			this.numeros.put(texte, numero);
+		}
+		return numero;
+	}
+
+	/**
+	 * Ajoute une partie a l'index
+	 *
+	 * @param run la partie
+	 * @param insererParScore vrai pour l'insérer dans les parties triées par score,
+	 * faux pendant la relecture du fichier (les parties sont triées une seule fois a la fin)
+	 */
+	private void indexer(Run run, boolean insererParScore) {
+		int k = this.size;
+		if (k == this.dates.length) {
+			int capacite = 2 * k;
+			this.dates = Arrays.copyOf(this.dates, capacite);
+			this.graines = Arrays.copyOf(this.graines, capacite);
+			this.maps = Arrays.copyOf(this.maps, capacite);
+			this.configs = Arrays.copyOf(this.configs, capacite);
+			this.scores = Arrays.copyOf(this.scores, capacite);
+			this.niveaux = Arrays.copyOf(this.niveaux, capacite);
+			this.coups = Arrays.copyOf(this.coups, capacite);
+			this.moyennes = Arrays.copyOf(this.moyennes, capacite);
+			this.p99s = Arrays.copyOf(this.p99s, capacite);
+			this.parScore = Arrays.copyOf(this.parScore, capacite);
+			this.sommeScores = Arrays.copyOf(this.sommeScores, capacite + 1);
+			this.sommeMoyennes = Arrays.copyOf(this.sommeMoyennes, capacite + 1);
+		}
+		this.dates[k] = run.getDate();
+		this.graines[k] = run.getGraine();
+		this.maps[k] = this.numero(run.getMaps());
+		this.configs[k] = this.numero(run.getConfig());
+		this.scores[k] = run.getScore();
+		this.niveaux[k] = run.getNiveaux();
+		this.coups[k] = run.getCoups();
+		this.moyennes[k] = (float)run.getMoyenne();
+		this.p99s[k] = (float)run.getP99();
+		this.sommeScores[k + 1] = this.sommeScores[k] + run.getScore();
+		this.sommeMoyennes[k + 1] = this.sommeMoyennes[k] + run.getMoyenne();
+		if (insererParScore) {//apres les parties de meme score
+			int bas = 0, haut = k;
+			while (bas < haut) {
+				int milieu = (bas + haut) >>> 1;
+				if (this.scores[this.parScore[milieu]] >= run.getScore()) {
+					bas = milieu + 1;
+				}
+				else {
+					haut = milieu;
+				}
+			}
+			System.arraycopy(this.parScore, bas, this.parScore, bas + 1, k - bas);
+			this.parScore[bas] = k;
+		}
+		Stats stats = this.parConfig.get(this.configs[k]);
+		if (stats == null) {
+			stats = new Stats(run.getConfig());
+			this.parConfig.put(this.configs[k], stats);
+		}
+		stats.add(run.getScore(), run.getNiveaux(), run.getMoyenne(), run.getP99());
+		this.size++;
+	}
+
+	/**
+	 * Trie toutes les parties par score décroissant, les plus anciennes d'abord a score égal
+	 */
+	private void trierParScore() {
+		long[] cles = new long[this.size];
+		for (int k = 0; k < this.size; k++) {
+			cles[k] = ((long)(Integer.MAX_VALUE - this.scores[k]) << 32) | k;
+		}
+		Arrays.sort(cles);
+		for (int r = 0; r < this.size; r++) {
+			this.parScore[r] = (int)cles[r];
+		}
+	}
+
+	/**
+	 * Affiche les meilleures parties, les moyennes glissantes et les statistiques par configuration
+	 * options :
+	 *   --file fichier   l'historique a lire (HISTORYFILE par défaut)
+	 *   --best n         nombre de meilleures parties affichées (10 par défaut)
+	 *   --rolling n      nombre de parties des moyennes glissantes (100 par défaut)
+	 *   --config c       n'affiche que les meilleures parties de cette configuration
+	 */
+	public static void main(String[] args) {
+		String fichier = HISTORYFILE, config = null;
+		int best = 10, rolling = 100;
+		for (int a = 0; a < args.length; a++) {
+			switch (args[a]) {
+			case "--file" : fichier = args[++a]; break;
+			case "--best" : best = Integer.parseInt(args[++a]); break;
+			case "--rolling" : rolling = Integer.parseInt(args[++a]); break;
+			case "--config" : config = args[++a]; break;
+			default : System.out.println("Option inconnue : " + args[a]);
+			}
+		}
+		long debut = System.nanoTime();
+		RunHistory history = new RunHistory(fichier);
+		System.out.println(history.size() + " parties relues en " + (System.nanoTime() - debut) / 1000000 + "ms");
+		System.out.println("Meilleures parties :");
+		for (Run run : history.best(best, config)) {
+			System.out.println("  " + run);
+		}
+		System.out.println(String.format(Locale.ROOT, "Sur les %d dernieres parties : score moyen %.1f, decision %.3fms", rolling,
+				history.rollingScore(rolling), history.rollingLatency(rolling)));
+		System.out.println("Par configuration :");
+		for (Stats stats : history.byConfig()) {
+			System.out.println("  " + stats);
+		}
+	}
+
+	protected void invariant() {
+		assert this.size >= 0 : "Invariant violé : taille négative";
+	}
+
+}
@@ -1,10 +1,27 @@
 package data;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 //import java.util.ArrayList;
 
 
 /**
- * Cette classe permet, à partir d'un fichier .map, de créer toutes les figures d'un niveau
+ * Cette classe garde le meilleur score : le fichier est lu une seule fois, les lectures se font en mémoire
+ * et l'écriture du fichier se fait en tache de fond (dans un fichier temporaire renommé ensuite,
+ * pour que le fichier ne soit jamais a moitié écrit).
+ * Plusieurs parties peuvent soumettre leur score en meme temps, y compris depuis plusieurs processus :
+ * l'écriture se fait sous un verrou de fichier, et garde le plus grand du score en mémoire et de celui du fichier.
  *
  * @author RGM
  * @version 03/03/2014
@@ -15,31 +32,140 @@ public class Score {
 
 	/** Le fichire contenant le score */
 	private static final String SCOREFILE = "./doc/score.score";
+	/** Le fichier verrouillé pendant l'écriture du score, partagé par les processus */
+	private static final String LOCKFILE = "./doc/score.lock";
 
+	/** Le meilleur score, lu dans le fichier au premier accès */
+	private static final AtomicInteger meilleurScore = new AtomicInteger(lire());
+	/** Vrai si une écriture du fichier est demandée mais pas encore commencée */
+	private static final AtomicBoolean ecritureDemandee = new AtomicBoolean();
+	/** Vrai si le score a été remplacé (setScore) : il est alors écrit meme s'il est plus petit que celui du fichier */
+	private static final AtomicBoolean remplacement = new AtomicBoolean();
+	/** Le thread qui écrit le fichier */
+	private static final ExecutorService ecrivain = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "score");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Getter pour le meilleur score
+	 *
+	 * @return le meilleur score, sous forme de texte
+	 */
 	public static String getScore(){
-		String str = "0";
+		return String.valueOf(meilleurScore.get());
+	}
+
+	/**
+	 * Getter pour le meilleur score
+	 *
+	 * @return le meilleur score
+	 */
+	public static int getMeilleurScore(){
+		return meilleurScore.get();
+	}
+
+	/**
+	 * Remplace le meilleur score, le fichier est écrit en tache de fond
+	 *
+	 * @param score le nouveau meilleur score
+	 */
+	public static void setScore(String score){
+		meilleurScore.set(Integer.parseInt(score.trim()));
+		remplacement.set(true);
+		demanderEcriture();
+	}
+
+	/**
+	 * Soumet le score d'une partie : il devient le meilleur score s'il est plus grand,
+	 * le fichier est alors écrit en tache de fond
+	 *
+	 * @param score le score de la partie
+	 * @return vrai si le score est le nouveau meilleur score
+	 */
+	public static boolean submit(int score){
+		int meilleur = meilleurScore.get();
+		while (score > meilleur) {
+			if (meilleurScore.compareAndSet(meilleur, score)) {
+				demanderEcriture();
+				return true;
+			}
+			meilleur = meilleurScore.get();
+		}
+		return false;
+	}
+
+	/**
+	 * Attend que le fichier soit a jour (a appeler avant de quitter le jeu)
+	 */
+	public static void flush(){
+		Future<?> fin = ecrivain.submit(() -> {});
 		try {
-			InputStream ips = new FileInputStream(SCOREFILE);
-			InputStreamReader ipsr = new InputStreamReader(ips);
-			BufferedReader br = new BufferedReader(ipsr);
-			str = br.readLine();
-			br.close();
+			fin.get();
 		}
-		catch (IOException exception) {
+		catch (Exception exception) {
 			System.out.println ("Erreur lors de l'ecriture du score : " + exception.getMessage());
 		}
-		return str;
 	}
 
-	public static void setScore(String score){
-		try {
-			FileWriter fw = new FileWriter(SCOREFILE);
-			fw.write(score);
-			fw.close();
+	/**
+	 * Demande l'écriture du fichier, plusieurs demandes avant l'écriture n'en font qu'une
+	 */
+	private static void demanderEcriture(){
+		if (ecritureDemandee.compareAndSet(false, true)) {
+			ecrivain.execute(() -> {
+				ecritureDemandee.set(false);
+				ecrire(remplacement.getAndSet(false));
+			});
+		}
+	}
+
+	private static int lire(){
+		try (BufferedReader br = Files.newBufferedReader(Paths.get(SCOREFILE), StandardCharsets.UTF_8)) {
+			String str = br.readLine();
+			return str == null ? 0 : Integer.parseInt(str.trim());
+		}
+		catch (IOException | NumberFormatException exception) {
+			System.out.println ("Erreur lors de la lecture du score : " + exception.getMessage());
+		}
+		return 0;
+	}
+
+	/**
+	 * Ecrit le meilleur score sous le verrou du fichier LOCKFILE : le fichier est relu, pour ne pas écraser
+	 * le meilleur score écrit entre temps par un autre processus, et chaque écriture a son propre fichier temporaire
+	 *
+	 * @param remplacer vrai pour écrire le score en mémoire meme s'il est plus petit que celui du fichier
+	 */
+	private static void ecrire(boolean remplacer){
+		Path fichier = Paths.get(SCOREFILE);
+		Path temporaire = null;
+		try (FileChannel canal = FileChannel.open(Paths.get(LOCKFILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			canal.lock(); // relaché a la fermeture du canal
+			int score = remplacer ? meilleurScore.get() : meilleurScore.accumulateAndGet(Files.exists(fichier) ? lire() : 0, Math::max);
+			temporaire = Files.createTempFile(fichier.getParent(), "score", ".tmp");
+			Files.write(temporaire, String.valueOf(score).getBytes(StandardCharsets.UTF_8));
+			try {
+				Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException exception) {
+				Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING);
+			}
 		}
 		catch (IOException exception) {
 			System.out.println ("Erreur lors de l'ecriture du score : " + exception.getMessage());
 		}
+		finally {
+			if (temporaire != null) {
+				try {
+					Files.deleteIfExists(temporaire);
+				}
+				catch (IOException exception) {
+					System.out.println ("Erreur lors de l'ecriture du score : " + exception.getMessage());
+				}
+			}
+		}
 	}
 
 	protected void invariant() {
@@ -1,6 +1,7 @@
 package logic;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -9,6 +10,9 @@ import java.util.Random;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import data.CompiledMap;
+import data.JunctionGraph;
+
 
 /**
  * class used to represent plan. It will provide for a given set of results an action to perform in each result
@@ -111,8 +115,23 @@ public class AI {
     public static TreeSet < Pair > alreadyBeenHerePairs = new TreeSet < > (); // Positions on the map that our pacman has visited (only coordinates, without direction)
     public static TreeMap < BeliefState, HashMap < String, Integer >> visitedBeliefStates = new TreeMap < > (); // Already visited belief states and their corresponding possible actions' scores
     public static TreeMap < BeliefState, Integer > nbOfMeets = new TreeMap < > (); // Number of times we have meet a particluar belief state during the game
+    public static TreeMap < BeliefState, BitSet > visitsOfSearch = new TreeMap < > (); // The visits read by the search of each entry of visitedBeliefStates, when it may be shared with the mirror image (see visitsRead)
     public static int globalDepth = 3; // The depth of the AND-OR search tree (decremented in AND nodes corresponding to Belief states)
     public static Random rand = new Random(); // Will be used to avoid plateaux and add a little bit of randomness
+    public static boolean macroActions = false; // If true, below the root of the search an action follows its corridor to the next junction, and the depth counts decisions instead of cells (see JunctionGraph)
+    public static final int MAX_CORRIDOR = 16; // Maximum number of cells followed by one macro action
+    static final String[] DIRECTIONS = {PacManLauncher.UP, PacManLauncher.DOWN, PacManLauncher.LEFT, PacManLauncher.RIGHT}; // In the order of CompiledMap.UP, DOWN, LEFT, RIGHT
+    public static boolean mergeBeliefs = false; // If true, the Results of the search and the belief tracked during the game merge their duplicate states (see BeliefState.merge)
+    public static boolean useTour = false; // If true, the heuristic and the fast path follow a tour of the remaining gums between gums that are as close (see GumTour)
+    public static GumTour gumTour = null; // The tour of the current level, updated before each move (null if useTour is false or the level is too large)
+    public static boolean useFastPath = true; // If true, pacman goes to the nearest gum without searching when no ghost can reach him within globalDepth moves (see GumRoutePlanner)
+    public static boolean useCones = true; // If true, AND nodes whose belief states provably cannot meet a ghost explore only one of them (see ReachabilityCones)
+    public static boolean useSymmetry = true; // If true, a belief state without entry in visitedBeliefStates and nbOfMeets takes the one of its mirror image when the two searches give the same scores (see sharesWithMirror)
+    public static double expectimaxThreshold = -1; // If >= 0, AND nodes average their children weighted by GhostOccupancy, and skip those less likely than this, instead of taking the min
+    public static ParticleFilter ghostTracker = null; // Probabilities of the ghost positions, when the game tracks them with particles (see PacManLauncher --particles)
+    // Penalty of a move next to a cell where ghostTracker is sure to find a ghost: of the size of the random part of the heuristic,
+    // so it only breaks near ties (30000 already loses 9 levels out of 14 on seeds 1, 2, 3, 5 and 6)
+    public static final int TRACKED_RISK = 1000;
 
     /**
      * Returns true if at least one of the ghosts is visible now
@@ -134,16 +153,11 @@ public class AI {
     }
 
     /**
-     * function that compute the next action to do (among UP, DOWN, LEFT, RIGHT)
-     * @param beliefState the current belief-state of the agent
-     * @return a string describing the next action (among PacManLauncher.UP/DOWN/LEFT/RIGHT)
+     * Stores that pacman has visited a position (used by the heuristic to reward new areas).
+     * Also called when a recorded game is replayed, so that the history matches the one of the recorded game
+     * @param pacmanPos the current position of pacman
      */
-    public static String findNextMove(BeliefState beliefState) {
-        // Possible actions from this belief state with their corresponding scores
-        HashMap < String, Integer > actions;
-        // Pacman's current position
-        Position pacmanPos = beliefState.getPacmanPos();
-
+    public static void recordVisit(Position pacmanPos) {
         // We update the alreadyBeenHere dictionnaire to store the number of times this position was visisted
         if (alreadyBeenHere.containsKey(pacmanPos)) {
             alreadyBeenHere.put(pacmanPos, alreadyBeenHere.get(pacmanPos) + 1);
@@ -153,32 +167,251 @@ public class AI {
 
         // And we update the alreadyBeenHerePairs to store that this coordinate was visisted
         alreadyBeenHerePairs.add(new Pair(pacmanPos.x, pacmanPos.y));
+    }
+
+    /**
+     * function that compute the next action to do (among UP, DOWN, LEFT, RIGHT)
+     * @param beliefState the current belief-state of the agent
+     * @return a string describing the next action (among PacManLauncher.UP/DOWN/LEFT/RIGHT)
+     */
+    public static String findNextMove(BeliefState beliefState) {
+        if (!SearchStats.ENABLED) {
+            return chooseMove(beliefState);
+        }
+        // The search statistics of this move are merged once the move is chosen
+        long start = System.nanoTime();
+        String move = chooseMove(beliefState);
+        SearchStats.add(SearchStats.MOVE_NANOS, System.nanoTime() - start);
+        SearchStats.endMove(beliefState.getNbrOfGhostPositions());
+        return move;
+    }
+
+    /**
+     * The move toward the nearest gum, when it is proved that no possible position of a ghost can reach the cells
+     * pacman goes through on his route during the next globalDepth moves
+     * @param beliefState the current belief-state of the agent
+     * @return the move, null if a ghost may interfere or no gum can be reached
+     */
+    private static String fastMove(BeliefState beliefState) {
+        ReachabilityCones cones = ReachabilityCones.forLevel(beliefState);
+        if (cones == null) {
+            return null;
+        }
+        int[] directions = new int[globalDepth];
+        int[] cells = new int[globalDepth];
+        int moves = GumRoutePlanner.forLevel().route(beliefState, gumTour == null ? null : gumTour.nextTarget(beliefState), directions, cells);
+        if (moves == 0) {
+            return null;
+        }
+        ArrayList < int[] > positions = BeliefState.getLevel().getGamePositions();
+        for (int i = 0; i < moves; i++) {
+            // A ghost meets pacman on this cell if it is there when he arrives, or one move before (they cross)
+            int[] pos = positions.get(cells[i]);
+            if (cones.mayReach(beliefState, pos[0], pos[1], i + 2)) {
+                return null;
+            }
+        }
+        if (moves < globalDepth) {
+            // Once the gum is eaten, pacman may go anywhere until the end of the horizon
+            int[] pos = positions.get(cells[moves - 1]);
+            if (cones.mayReach(beliefState, pos[0], pos[1], moves + 1 + 2 * (globalDepth - moves))) {
+                return null;
+            }
+        }
+        switch (directions[0]) {
+            case CompiledMap.UP:
+                return PacManLauncher.UP;
+            case CompiledMap.DOWN:
+                return PacManLauncher.DOWN;
+            case CompiledMap.LEFT:
+                return PacManLauncher.LEFT;
+            case CompiledMap.RIGHT:
+                return PacManLauncher.RIGHT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * tell if the search from a belief state gives the scores of the search from its mirror image, with LEFT and RIGHT
+     * swapped, when the visits it reads are the mirror image of each other (see visitsRead): on a mirror-symmetric level,
+     * when nothing else makes the search depend on the side of the map (the tour of the gums and the budget do), and when
+     * the cones prove that no ghost can meet pacman within the search (the ghosts are numbered in another order in the
+     * mirror image, and when two of them meet pacman at once the first one decides if he eats it or dies)
+     * @param state the belief state
+     * @return true if the entry of the state and the one of its mirror image can be shared
+     */
+    static boolean sharesWithMirror(BeliefState state) {
+        if (!useSymmetry || gumTour != null || BeliefBudget.isEnabled() || BeliefState.getLevel() == null
+            || !BeliefState.getLevel().isMirrorSymmetric()) {
+            return false;
+        }
+        ReachabilityCones cones = ReachabilityCones.forLevel(state);
+        return cones != null && cones.isSafe(state, globalDepth * (macroActions ? MAX_CORRIDOR : 1) + 1);
+    }
+
+    /**
+     * give the visits that the search from a belief state reads: for the cells that pacman can reach within the search,
+     * and his starting cell (where he is back after a death), if he has already been there, and with each heading
+     * @param state the belief state
+     * @param mirrored if true, each cell is read on its mirror image, with LEFT and RIGHT swapped (the state is then
+     * the mirror image of the current one)
+     * @return six bits per cell, in the order of their numbers (see CompiledMap): read, visited, visited with each heading
+     */
+    static BitSet visitsRead(BeliefState state, boolean mirrored) {
+        CompiledMap level = BeliefState.getLevel();
+        ArrayList < int[] > positions = level.getGamePositions();
+        int columns = state.getMap()[0].length;
+        int reach = globalDepth * (macroActions ? MAX_CORRIDOR : 1);
+        int[] distances = state.distancesFromPacman();
+        int[] init = BeliefState.getPacmanInit();
+        int start = level.getNumeroCase(init[1] / BeliefState.getTailleCase(), init[0] / BeliefState.getTailleCase());
+        BitSet visits = new BitSet();
+        for (int cell = 0; cell < distances.length; cell++) {
+            if (distances[cell] > reach && cell != start) {
+                continue;
+            }
+            int x = positions.get(cell)[0], y = positions.get(cell)[1];
+            if (mirrored) {
+                y = columns - 1 - y;
+            }
+            visits.set(6 * cell, true); // the cell is read
+            visits.set(6 * cell + 1, alreadyBeenHerePairs.contains(new Pair(x, y)));
+            for (int dir = 0; dir < 4; dir++) {
+                char heading = "UDLR".charAt(mirrored && dir >= 2 ? dir ^ 1 : dir);
+                visits.set(6 * cell + 2 + dir, alreadyBeenHere.containsKey(new Position(x, y, heading)));
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * give the scores of the actions in the mirror image of a belief state (see BeliefState.mirror)
+     * @param actions the scores of the actions in a belief state
+     * @return the same scores, with the ones of LEFT and RIGHT swapped
+     */
+    static HashMap < String, Integer > mirrorActions(HashMap < String, Integer > actions) {
+        HashMap < String, Integer > mirrored = new HashMap < > ();
+        for (Map.Entry < String, Integer > action: actions.entrySet()) {
+            String name = action.getKey().equals("LEFT") ? "RIGHT" : action.getKey().equals("RIGHT") ? "LEFT" : action.getKey();
+            mirrored.put(name, action.getValue());
+        }
+        return mirrored;
+    }
+
+    /**
+     * lower the scores of the actions by the probability, estimated by ghostTracker, that a ghost is on the cell pacman
+     * moves to or next to it (it may then step onto him)
+     * @param beliefState the current belief-state of the agent
+     * @param actions the scores of the actions, not modified
+     * @return the lowered scores (the actions where pacman dies or does not move are left as they are)
+     */
+    static HashMap < String, Integer > withTrackedRisk(BeliefState beliefState, HashMap < String, Integer > actions) {
+        HashMap < String, Integer > risked = new HashMap < > (actions);
+        CompiledMap level = BeliefState.getLevel();
+        Position pacman = beliefState.getPacmanPos();
+        int cell = level.getNumeroCase(pacman.x, pacman.y);
+        if (cell == -1) {
+            return risked;
+        }
+        ArrayList < int[] > positions = level.getGamePositions();
+        for (int dir = 0; dir < 4; dir++) {
+            Integer value = actions.get(DIRECTIONS[dir]);
+            int next = level.next(cell, dir);
+            if (value == null || next == -1 || value <= Integer.MIN_VALUE + 1) {
+                continue;
+            }
+            double risk = 0;
+            for (int around = -1; around < 4; around++) {
+                int near = around == -1 ? next : level.next(next, around);
+                if (near != -1) {
+                    int[] pos = positions.get(near);
+                    risk = Math.max(risk, ghostTracker.occupancy(pos[0], pos[1]));
+                }
+            }
+            risked.put(DIRECTIONS[dir], (int) Math.max(Integer.MIN_VALUE + 2L, value - (long)(risk * TRACKED_RISK)));
+        }
+        return risked;
+    }
+
+    /**
+     * compute the next action to do (see findNextMove)
+     * @param beliefState the current belief-state of the agent
+     * @return a string describing the next action (among PacManLauncher.UP/DOWN/LEFT/RIGHT)
+     */
+    private static String chooseMove(BeliefState beliefState) {
+        // Possible actions from this belief state with their corresponding scores
+        HashMap < String, Integer > actions;
+        // We store that pacman has visited his current position
+        recordVisit(beliefState.getPacmanPos());
+        // We update the tour of the gums (the gums eaten since the last move are removed from it)
+        gumTour = useTour ? GumTour.forLevel() : null;
+        if (gumTour != null) {
+            gumTour.update(beliefState);
+        }
+
+        // If no ghost can interfere within the depth of the search, we just follow the route to the nearest gum
+        if (useFastPath) {
+            String move = fastMove(beliefState);
+            GumRoutePlanner.count(move != null);
+            if (move != null) {
+                return move;
+            }
+        }
 
         boolean ok = hasVisibleGhosts(beliefState);
+        // The belief state under which this one is found in the dictionnaries: itself, or its mirror image when this one has no
+        // entry and the entry of the mirror can be shared (see sharesWithMirror), its actions are then swapped LEFT and RIGHT
+        BeliefState key = beliefState;
+        boolean mirrored = false;
         // If we are not in immediate danger, meaning that we don't see a ghost right now, we can risk a little bit
         if (!ok) {
+            boolean shared = sharesWithMirror(beliefState);
+            if (shared && !visitedBeliefStates.containsKey(beliefState)) {
+                // The entry of the mirror image has the same scores with LEFT and RIGHT swapped, if its search read the
+                // mirror image of the visits there are now
+                BeliefState mirror = beliefState.mirror();
+                BitSet read = visitsOfSearch.get(mirror);
+                if (read != null && read.equals(visitsRead(mirror, true))) {
+                    key = mirror;
+                    mirrored = true;
+                }
+            }
             // If we have alreday visited this belief state, we can get immediatly the actions and not recalculate them
-            if (visitedBeliefStates.containsKey(beliefState)) {
+            if (visitedBeliefStates.containsKey(key)) {
                 // System.out.println("\t\tReusing previous computation for this belief state...");
-                actions = visitedBeliefStates.get(beliefState);
+                actions = mirrored ? mirrorActions(visitedBeliefStates.get(key)) : visitedBeliefStates.get(key);
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.CACHE_HITS, 1);
+                }
             } else { // Otherwise we launch our AND-OR search to find the actions and their corresponding scores
-                actions = OrAndTree.getNextAction(new NodeBeliefState(beliefState, globalDepth), globalDepth);
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.CACHE_MISSES, 1);
+                }
+                actions = OrAndTree.getNextAction(new NodeBeliefState(beliefState, globalDepth), globalDepth, shared);
                 // And store them to the dictionnary
-                visitedBeliefStates.put(beliefState, actions);
+                visitedBeliefStates.put(key, actions);
+                if (shared) {
+                    visitsOfSearch.put(key, visitsRead(key, false));
+                }
             }
 
             // We update the number of times we have visited this belief state
-            if (nbOfMeets.containsKey(beliefState)) {
-                nbOfMeets.put(beliefState, nbOfMeets.get(beliefState) + 1);
-                // System.out.println("\t\tNumber of times we've met this belief state: " + nbOfMeets.get(beliefState));
+            if (nbOfMeets.containsKey(key)) {
+                nbOfMeets.put(key, nbOfMeets.get(key) + 1);
+                // System.out.println("\t\tNumber of times we've met this belief state: " + nbOfMeets.get(key));
             } else {
-                nbOfMeets.put(beliefState, 1);
-                visitedBeliefStates.put(beliefState, actions);
+                nbOfMeets.put(key, 1);
             }
             // If we are in danger, then we should recalculate the actions and their corresponding scores
         } else {
             actions = OrAndTree.getNextAction(new NodeBeliefState(beliefState, globalDepth), globalDepth);
         }
+        // When the ghosts are tracked with particles, we avoid the moves toward the cells where a ghost probably is now
+        // (after the dictionnary, because the estimate changes from one move to the next)
+        if (ghostTracker != null && ghostTracker.getLevel() == BeliefState.getLevel()) {
+            actions = withTrackedRisk(beliefState, actions);
+        }
 
         // If the algo hasn't been able to find any possible actions from here then well... I guess we have to apply a default action
         if (actions.size() == 0) {
@@ -188,10 +421,10 @@ public class AI {
 
         // We sort the possible actions by their score
         LinkedHashMap < String, Integer > sorted = actions.entrySet().stream()
-            .sorted((e1, e2) - > Integer.compare(e2.getValue(), e1.getValue()))
+            .sorted((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()))
             .collect(
                 LinkedHashMap::new,
-                (m, e) - > m.put(e.getKey(), e.getValue()),
+                (m, e) -> m.put(e.getKey(), e.getValue()),
                 Map::putAll
             );
 
@@ -201,7 +434,7 @@ public class AI {
         // To avoid infinite loops, once we have visited a particular belief state
         // more than 5 times, we change the action applied from the best one to the second best action
         if (!ok) {
-            if (nbOfMeets.get(beliefState) >= 5 && it.hasNext()) {
+            if (nbOfMeets.get(key) >= 5 && it.hasNext()) {
                 // System.out.println("\t\tChoosing second best action because we've been here more than 5 times...");
                 bestAction = it.next();
             }
@@ -262,6 +495,9 @@ class NodeBeliefState {
     boolean isGoal;
 
     NodeBeliefState(BeliefState data, int depth) {
+        if (SearchStats.ENABLED) {
+            SearchStats.add(SearchStats.AND_NODES, 1);
+        }
         this.data = data; // current belief state
         this.value = this.evaluate(); // initial heuristic evaluation
         this.children = new ArrayList < > (); // The list of possible actions (will be expanded later)
@@ -274,15 +510,50 @@ class NodeBeliefState {
      * @param depth the current node's depth, if 0, then the node won't be expanded
      */
     void expandNode(int depth) {
+        this.expandNode(depth, false);
+    }
+
+    /**
+     * Extends the current AND node (see expandNode(int)), with actions that may be macro actions
+     * @param depth the current node's depth, if 0, then the node won't be expanded
+     * @param macro if true, the belief states where pacman has entered a corridor go on along it to the next junction
+     */
+    void expandNode(int depth, boolean macro) {
         // We do not expand if the maximum depth is achieved
         if (depth <= 0) {
             return;
         }
         // We get the list of possible actions and their corresponding resulting belief states
+        long start = SearchStats.ENABLED ? System.nanoTime() : 0;
         Plans plans = this.data.extendsBeliefState();
+        if (macro) {
+            for (int i = 0; i < plans.size(); i++) {
+                ArrayList < BeliefState > states = plans.getResult(i).getBeliefStates();
+                ArrayList < BeliefState > followed = this.followCorridor(states);
+                if (followed != states) {
+                    states.clear();
+                    states.addAll(followed);
+                }
+            }
+        }
+        if (BeliefBudget.isEnabled()) {
+            for (int i = 0; i < plans.size(); i++) {
+                BeliefBudget.apply(plans.getResult(i).getBeliefStates());
+            }
+        }
+        if (SearchStats.ENABLED) {
+            SearchStats.add(SearchStats.EXPAND_NANOS, System.nanoTime() - start);
+            SearchStats.add(SearchStats.EXPANSIONS, 1);
+            for (int i = 0; i < plans.size(); i++) {
+                SearchStats.add(SearchStats.RESULTS, 1);
+                SearchStats.add(SearchStats.RESULT_STATES, plans.getResult(i).size());
+                SearchStats.max(SearchStats.MAX_RESULT, plans.getResult(i).size());
+            }
+        }
         for (int i = 0; i < plans.size(); i++) {
             // We create the OR node correspong to this next possible action
             NodeAction nAction = new NodeAction(plans.getAction(i));
+            nAction.from = this.data;
             // And add it to this node's children
             this.children.add(nAction);
 
@@ -293,11 +564,74 @@ class NodeBeliefState {
         }
     }
 
+    /**
+     * Makes the belief states resulting from an action go on along the edge of the junction graph pacman has entered,
+     * until he reaches its junction or dead end, dies or eats the last gum. The edge is looked up once: all the states
+     * where pacman is alive are on its cell, and they all take its next direction at each step, where the ghosts
+     * move by their usual rules
+     * @param states the belief states resulting from an action from this node
+     * @return the belief states at the end of the edge (the same list if pacman has not entered a corridor)
+     */
+    private ArrayList < BeliefState > followCorridor(ArrayList < BeliefState > states) {
+        CompiledMap level = BeliefState.getLevel();
+        JunctionGraph graph = level.getJunctionGraph();
+        Position from = this.data.getPacmanPos();
+        Position pos = null;
+        for (int i = 0; pos == null && i < states.size(); i++) {
+            if (states.get(i).getLife() == this.data.getLife()) {
+                pos = states.get(i).getPacmanPos();
+            }
+        }
+        if (pos == null || pos.x == from.x && pos.y == from.y) {
+            return states; // pacman has died everywhere or not moved (wall)
+        }
+        int cell = level.getNumeroCase(pos.x, pos.y);
+        int heading = "UDLR".indexOf(pos.dir);
+        JunctionGraph.Edge edge = cell == -1 || heading == -1 || graph.isNode(cell) ? null : graph.edgeThrough(cell, heading);
+        if (edge == null) {
+            return states;
+        }
+        ArrayList < BeliefState > done = new ArrayList < > ();
+        int first = graph.stepOf(cell, heading) + 1;
+        for (int step = first; step < edge.length && step - first < AI.MAX_CORRIDOR && !states.isEmpty(); step++) {
+            String toward = AI.DIRECTIONS[edge.getDirection(step)];
+            ArrayList < BeliefState > next = new ArrayList < > ();
+            for (BeliefState bs: states) {
+                if (bs.getLife() < this.data.getLife() || bs.getNbrOfGommes() == 0) {
+                    done.add(bs);
+                    continue;
+                }
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.CORRIDOR_STEPS, 1);
+                }
+                next.addAll(bs.extendsBeliefState(toward).getBeliefStates());
+            }
+            states = next.size() > 1 ? BeliefState.merge(next) : next;
+        }
+        done.addAll(states);
+        return done.size() > 1 ? BeliefState.merge(done) : done;
+    }
+
     /**
      * Heuristic function that evaluates how good the current belief state is
      * @return int the score of the current belief state
      */
     int evaluate() {
+        if (!SearchStats.ENABLED) {
+            return this.heuristic();
+        }
+        long start = System.nanoTime();
+        int score = this.heuristic();
+        SearchStats.add(SearchStats.EVALUATE_NANOS, System.nanoTime() - start);
+        SearchStats.add(SearchStats.HEURISTIC_CALLS, 1);
+        return score;
+    }
+
+    /**
+     * The heuristic itself (see evaluate)
+     * @return int the score of the current belief state
+     */
+    private int heuristic() {
         // If pacman has won the current level - huge bonus
         if (this.isGoal) {
             return +1000000;
@@ -306,7 +640,9 @@ class NodeBeliefState {
         // Otherwise we calculate it
         int score = 0;
         // How far the pacman is from the nearest gum * 200, so the farthest he is, the more penalty he receives
-        score -= 200 * this.data.distanceMinToGum();
+        // (no reachable gum counts as the largest distance on the map, the number of free cells)
+        int distance = this.data.distanceMinToGum();
+        score -= 200 * (distance == Integer.MAX_VALUE ? BeliefState.getLevel().getGamePositions().size() : distance);
         // We give pacman a little bonus if he discovers a new area on the map
         if (!AI.alreadyBeenHere.containsKey(this.data.getPacmanPos())) {
             score += 20000;
@@ -330,8 +666,13 @@ class NodeAction {
     int value;
     // Set of belief states resulting from applying this action on the current belief state
     ArrayList < NodeBeliefState > children;
+    // The belief state the action is applied to (to weight the children in expectimax mode)
+    BeliefState from;
 
     NodeAction(ArrayList < String > actions) {
+        if (SearchStats.ENABLED) {
+            SearchStats.add(SearchStats.OR_NODES, 1);
+        }
         this.actions = actions;
         this.value = Integer.MIN_VALUE + 1; // We start with the smallest value, it will be updated later during the search
         this.children = new ArrayList < > ();
@@ -360,6 +701,35 @@ class OrAndTree {
      * @return HashMap<String, Integer> a dictionary that contains the list of possible actions and their corresponding scores found by the algorithm
      */
     static HashMap < String, Integer > getNextAction(NodeBeliefState initialState, int depth) {
+        return getNextAction(initialState, depth, false);
+    }
+
+    /**
+     * The AND-OR algorithm (see getNextAction(NodeBeliefState, int)), with exact scores if asked
+     * @param initialState The initial belief state from which the Pacman starts
+     * @param depth The maximum depth of the search tree
+     * @param exact if true, every action is searched with the whole alpha-beta window, so its score does not depend on the
+     * order of the actions (used when the scores are shared with the mirror image, see AI.sharesWithMirror)
+     * @return HashMap<String, Integer> the possible actions and their scores
+     */
+    static HashMap < String, Integer > getNextAction(NodeBeliefState initialState, int depth, boolean exact) {
+        if (!SearchStats.ENABLED) {
+            return search(initialState, depth, exact);
+        }
+        long start = System.nanoTime();
+        HashMap < String, Integer > actions = search(initialState, depth, exact);
+        SearchStats.add(SearchStats.SEARCH_NANOS, System.nanoTime() - start);
+        return actions;
+    }
+
+    /**
+     * The AND-OR search itself (see getNextAction)
+     * @param initialState The initial belief state from which the Pacman starts
+     * @param depth The maximum depth of the search tree
+     * @param exact if true, the actions are searched with the whole window
+     * @return HashMap<String, Integer> the possible actions and their scores
+     */
+    private static HashMap < String, Integer > search(NodeBeliefState initialState, int depth, boolean exact) {
         // We are going to prune to make the algorithm faster
         int alpha = Integer.MIN_VALUE;
         int beta = Integer.MAX_VALUE;
@@ -374,8 +744,30 @@ class OrAndTree {
 
         // For all possible actions from this belief state
         for (NodeAction action: initialState.children) {
-            // We calculate the action's value using AND search
-            int value = andSearch(action, depth - 1, alpha, beta);
+            // We check whether pacman is going to certainly die after applying this action
+            boolean isGoingToDieCertainly = true;
+            for (NodeBeliefState bs: action.children) {
+                if (bs.data.getLife() >= initialState.data.getLife()) {
+                    isGoingToDieCertainly = false;
+                    break;
+                }
+            }
+            if (isGoingToDieCertainly) {
+                // The action is lost whatever its subtree, we don't search it
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.LOST_ACTIONS, 1);
+                }
+                for (String a: action.actions) {
+                    actions.put(a, Integer.MIN_VALUE + 1);
+                }
+                bestValue = Math.max(bestValue, Integer.MIN_VALUE + 1);
+                alpha = Math.max(alpha, bestValue);
+                continue;
+            }
+
+            // We calculate the action's value using AND search (with the whole window when the scores must not depend on
+            // the order of the actions, the pruning would otherwise bound those after the best one)
+            int value = andSearch(action, depth - 1, exact ? Integer.MIN_VALUE : alpha, beta);
 
             // To better evaluate the action, we update its value depending on the immediate next position it can lead to
             // (which we consider more important than future rewards deeper in the tree)
@@ -394,10 +786,14 @@ class OrAndTree {
                     // And if pacman has never been in this position
                     if (AI.alreadyBeenHerePairs.contains(new Pair(nextPos.x, nextPos.y)) == false) {
                         // We give a big bonus
-                        value += 50000 * (25 - nextBs.distanceMinToGum());
+                        value += closerBonus(50000, nextBs.distanceMinToGum());
                     } else {
                         // If pacman has already visited this position we still give a bonus but smaller
-                        value += 15000 * (25 - nextBs.distanceMinToGum());
+                        value += closerBonus(15000, nextBs.distanceMinToGum());
+                    }
+                    // Among the moves that get closer to the nearest gum, we prefer the one that follows the tour
+                    if (AI.gumTour != null && AI.gumTour.targetDistance(initialState.data) - AI.gumTour.targetDistance(nextBs) == 1) {
+                        value += 10000;
                     }
                 } else {
                     // If pacman became farther from the closed gum, because he ate it, we give him a big bonus
@@ -408,21 +804,8 @@ class OrAndTree {
                 }
             }
 
-            // We check whether pacman is going to certainly die after applying this action
-            boolean isGoingToDieCertainly = true;
-            for (NodeBeliefState bs: action.children) {
-                if (bs.data.getLife() >= initialState.data.getLife()) {
-                    isGoingToDieCertainly = false;
-                    break;
-                }
-            }
-
-            // If yes, then we assign the minimal value to this action
-            if (isGoingToDieCertainly) {
-                value = Integer.MIN_VALUE + 1;
-            } else { // otherwise a bonus
-                value += 5000;
-            }
+            // Pacman may survive this action, we give a bonus
+            value += 5000;
 
             // We store the value for all equivalent actions
             for (String a: action.actions) {
@@ -436,6 +819,18 @@ class OrAndTree {
         return actions;
     }
 
+    /**
+     * The bonus of an action that gets pacman closer to the nearest gum: the closer the gum, the bigger the bonus.
+     * It stays positive when the gum is farther than the side of the map (the distance follows the maze), and bounded on large maps
+     * @param weight the bonus per cell between the gum and the side of the map
+     * @param distance the distance to the nearest gum after the action
+     * @return weight * (side - distance), at least weight
+     */
+    static int closerBonus(int weight, int distance) {
+        long cells = Math.max(1L, (long) BeliefState.getLevel().getNbCases() - distance);
+        return (int) Math.min(Integer.MAX_VALUE / 4, weight * cells);
+    }
+
     /**
      * The function that implements the OR search from a given AND node (representing a belief state)
      * @param node The belief state from which the search starts
@@ -445,16 +840,25 @@ class OrAndTree {
      * @return int the score of the belief state given in the parameters
      */
     static int orSearch(NodeBeliefState node, int depth, int alpha, int beta) {
+        if (SearchStats.ENABLED) {
+            SearchStats.max(SearchStats.MAX_DEPTH, AI.globalDepth - depth);
+        }
         // If the maximum depth is reached or the node is a goal node, we return the node's heuristic value
         if (depth == 0 || node.isGoal) {
+            if (SearchStats.ENABLED) {
+                SearchStats.add(SearchStats.LEAVES, 1);
+            }
             return node.value;
         }
 
         // Otherwise we expand the node
-        node.expandNode(depth);
+        node.expandNode(depth, AI.macroActions);
 
         // Checking whether we have possible actions after expanding the node
         if (node.children.isEmpty()) {
+            if (SearchStats.ENABLED) {
+                SearchStats.add(SearchStats.LEAVES, 1);
+            }
             return node.value;
         }
 
@@ -473,6 +877,9 @@ class OrAndTree {
             // No need to continue exploring actions from this belief state because this branch
             // cannot lead to a better result than one of the previously explored, so we cut it
             if (alpha >= beta) {
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.BETA_CUTOFFS, 1);
+                }
                 break;
             }
         }
@@ -495,6 +902,19 @@ class OrAndTree {
             action.value = Integer.MIN_VALUE + 1;
             return action.value;
         }
+        // (not with macro actions, whose depth counts decisions and not cells)
+        if (depth > 0 && action.children.size() > 1 && AI.useCones && !AI.macroActions && isSafe(action, depth)) {
+            // The belief states only differ by the positions of ghosts that cannot meet pacman before the leaves,
+            // so they all have the same future and value (up to the random part of the heuristic)
+            if (SearchStats.ENABLED) {
+                SearchStats.add(SearchStats.SAFE_SKIPPED, action.children.size() - 1);
+            }
+            action.value = orSearch(action.children.get(0), depth, alpha, beta);
+            return action.value;
+        }
+        if (AI.expectimaxThreshold >= 0) {
+            return expectSearch(action, depth);
+        }
 
         // Current minimal value (for possible pruning and to return the final value of this action)
         int minValue = Integer.MAX_VALUE;
@@ -511,6 +931,9 @@ class OrAndTree {
             // No need to continue exploring belief states from this possible action because this branch
             // can't lead to a better result than one of the previously explored, so we cut it
             if (beta <= alpha) {
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.ALPHA_CUTOFFS, 1);
+                }
                 break;
             }
         }
@@ -518,4 +941,55 @@ class OrAndTree {
         action.value = minValue;
         return action.value;
     }
+
+    /**
+     * Tells whether no ghost can meet pacman in the belief states of an action before the leaves of the search
+     * @param action The action node, whose belief states are alive
+     * @param depth The remaining depth under its belief states
+     * @return true if it is sure that the belief states have the same future
+     */
+    static boolean isSafe(NodeAction action, int depth) {
+        for (NodeBeliefState bs: action.children) {
+            if (bs.data.getLife() != action.from.getLife()) {
+                return false;
+            }
+        }
+        ReachabilityCones cones = ReachabilityCones.forLevel(action.from);
+        // from the state the action is applied to, pacman and the ghosts make one more move than from its belief states
+        return cones != null && cones.isSafe(action.from, depth + 1);
+    }
+
+    /**
+     * The expectimax version of andSearch: the value of the action is the mean of the values of its belief states,
+     * weighted by their probability (see GhostOccupancy.weights). The belief states less likely than AI.expectimaxThreshold
+     * are not explored, except those where pacman dies and the most likely one, and the mean is taken over the others.
+     * Alpha-beta bounds do not apply to a mean, so the children are searched with a full window.
+     * @param action The action node from which the search starts
+     * @param depth The maximum depth of the search tree (the depth is decremented only in AND nodes)
+     * @return int the expected score of the action node given in the parameters
+     */
+    static int expectSearch(NodeAction action, int depth) {
+        double[] weights = GhostOccupancy.weights(action.from, action.children);
+        int mostLikely = 0;
+        for (int i = 1; i < weights.length; i++) {
+            if (weights[i] > weights[mostLikely]) {
+                mostLikely = i;
+            }
+        }
+        double sum = 0, mass = 0;
+        for (int i = 0; i < weights.length; i++) {
+            NodeBeliefState bs = action.children.get(i);
+            boolean dies = bs.data.getLife() < action.from.getLife();
+            if (weights[i] < AI.expectimaxThreshold && !dies && i != mostLikely) {
+                if (SearchStats.ENABLED) {
+                    SearchStats.add(SearchStats.SKIPPED_CHILDREN, 1);
+                }
+                continue;
+            }
+            sum += weights[i] * orSearch(bs, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            mass += weights[i];
+        }
+        action.value = (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, sum / mass));
+        return action.value;
+    }
 }
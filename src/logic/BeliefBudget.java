@@ -0,0 +1,148 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional approximation of the belief states explored by the AND-OR search, to put a ceiling on the cost of a move.
+ * When a Result of the search has more states than maxStates, only the most dangerous ones are kept: the states where
+ * Pacman dies, then those where a ghost can be the closest to Pacman. When a ghost can be at more than maxPositions
+ * positions, only the positions closest to Pacman along the maze are kept, the farther ones being those the ghost needs
+ * the most moves to turn into a threat.
+ * Only the states built by the search are approximated, the belief state tracked during the game stays exact.
+ * Both budgets are off (0) by default.
+ */
+public final class BeliefBudget {
+    private static int maxStates = 0; // states kept per Result, 0 for no limit
+    private static int maxPositions = 0; // positions kept per ghost, 0 for no limit
+
+    // the counters are shared by the threads that search (the game, the benchmarks)
+    private static final AtomicLong results = new AtomicLong(); // Results seen while a budget is set
+    private static final AtomicLong cappedResults = new AtomicLong(); // Results that were over maxStates
+    private static final AtomicLong prunedStates = new AtomicLong(); // states removed from the Results
+    private static final AtomicLong prunedPositions = new AtomicLong(); // ghost positions removed from the states
+
+    private BeliefBudget() {
+    }
+
+    /**
+     * Set the budgets
+     * @param states the number of states kept per Result of the search, 0 for no limit
+     * @param positions the number of positions kept per ghost in these states, 0 for no limit
+     */
+    public static void setBudget(int states, int positions) {
+        assert states >= 0 && positions >= 0 : "Precondition non respectée : budget négatif";
+        maxStates = states;
+        maxPositions = positions;
+    }
+
+    /**
+     * Tell if a budget is set
+     * @return true if the Results of the search are approximated
+     */
+    public static boolean isEnabled() {
+        return maxStates > 0 || maxPositions > 0;
+    }
+
+    /**
+     * Apply the budget to the states of a Result of the search
+     * @param states the states of the Result, the list and the states are modified
+     */
+    static void apply(ArrayList < BeliefState > states) {
+        results.incrementAndGet();
+        if (maxPositions > 0) {
+            for (BeliefState state: states) {
+                int[] distances = null; // from Pacman, computed once per state
+                for (int k = 0; k < state.getNbrOfGhost(); k++) {
+                    if (state.getGhostPositions(k).size() > maxPositions) {
+                        if (distances == null) {
+                            distances = state.distancesFromPacman();
+                        }
+                        keepNearest(state, k, distances);
+                    }
+                }
+            }
+        }
+        if (maxStates > 0 && states.size() > maxStates) {
+            keepMostDangerous(states);
+        }
+    }
+
+    private static void keepNearest(BeliefState state, int ghost, int[] distances) {
+        TreeSet < Position > positions = state.getGhostPositions(ghost);
+        Position[] byDistance = positions.toArray(new Position[positions.size()]);
+        Arrays.sort(byDistance, (p1, p2) -> Integer.compare(distance(p1, distances), distance(p2, distances)));
+        TreeSet < Position > kept = new TreeSet < > ();
+        for (int i = 0; i < maxPositions; i++) {
+            kept.add(byDistance[i]);
+        }
+        prunedPositions.addAndGet(positions.size() - kept.size());
+        if (SearchStats.ENABLED) {
+            SearchStats.add(SearchStats.PRUNED_POSITIONS, positions.size() - kept.size());
+        }
+        state.setGhostPositions(ghost, kept);
+    }
+
+    private static void keepMostDangerous(ArrayList < BeliefState > states) {
+        int maxLife = 0;
+        for (BeliefState state: states) {
+            maxLife = Math.max(maxLife, state.getLife());
+        }
+        // danger of each state: -1 if Pacman has died, otherwise the distance of the closest possible ghost
+        long[] keys = new long[states.size()];
+        for (int i = 0; i < keys.length; i++) {
+            BeliefState state = states.get(i);
+            int danger = state.getLife() < maxLife ? -1 : closestGhost(state);
+            keys[i] = ((long) danger << 32) | i; // the order of the Result breaks ties
+        }
+        Arrays.sort(keys);
+        boolean[] keep = new boolean[states.size()];
+        for (int i = 0; i < maxStates; i++) {
+            keep[(int) keys[i]] = true;
+        }
+        int before = states.size();
+        Iterator < BeliefState > it = states.iterator();
+        for (int i = 0; it.hasNext(); i++) {
+            it.next();
+            if (!keep[i]) {
+                it.remove();
+            }
+        }
+        cappedResults.incrementAndGet();
+        prunedStates.addAndGet(before - states.size());
+        if (SearchStats.ENABLED) {
+            SearchStats.add(SearchStats.PRUNED_STATES, before - states.size());
+        }
+    }
+
+    private static int closestGhost(BeliefState state) {
+        int[] distances = state.distancesFromPacman();
+        int closest = Integer.MAX_VALUE >> 1;
+        for (int k = 0; k < state.getNbrOfGhost(); k++) {
+            for (Position pos: state.getGhostPositions(k)) {
+                closest = Math.min(closest, distance(pos, distances));
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * length of the shortest path between Pacman and a position, Integer.MAX_VALUE >> 1 if it cannot be reached
+     */
+    private static int distance(Position pos, int[] distances) {
+        int cell = BeliefState.getLevel().getNumeroCase(pos.x, pos.y);
+        return cell == -1 ? Integer.MAX_VALUE >> 1 : Math.min(distances[cell], Integer.MAX_VALUE >> 1);
+    }
+
+    /**
+     * Give what the budget has removed since the start of the game
+     * @return a line with the number of Results, of capped Results, of removed states and ghost positions
+     */
+    public static String summary() {
+        return "belief budget (states " + maxStates + ", positions " + maxPositions + "): " + results.get() + " results, "
+            + cappedResults.get() + " capped, " + prunedStates.get() + " states and " + prunedPositions.get() + " ghost positions pruned";
+    }
+}
@@ -1,12 +1,19 @@
 package logic;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 //import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
+import data.CompiledMap;
 import view.Gomme;
 
 /**
@@ -94,21 +101,41 @@ public class BeliefState implements Comparable{
 	private int nbrOfGommes, nbrOfSuperGommes, score, life;
 	private ArrayList<Integer> compteurPeur;
 	private static ArrayList<int[]> gamePositions;
-	private static HashSet<String> visible;
+	private static CompiledMap level;
 	private static int pacmanXInit, pacmanYInit;
 	private static ArrayList<int[]> listPGhostInit;
 	private static int tailleCase;
 	private static int taille;
+	// work arrays of distanceMinToGum, one entry per free cell of the level
+	private static int[] stamps, queue, distances;
+	private static int stamp;
 	
 	
-	public static void setStaticVariables(ArrayList<int[]> gamePositions, HashSet<String> visible, int pacmanXInit, int pacmanYInit, ArrayList<int[]> listPGhostInit, int tailleCase, int taille) {
-		BeliefState.gamePositions = gamePositions;
-		BeliefState.visible = visible;
+	public static void setStaticVariables(CompiledMap level, int pacmanXInit, int pacmanYInit, ArrayList<int[]> listPGhostInit, int tailleCase) {
+		BeliefState.level = level;
+		BeliefState.gamePositions = level.getGamePositions();
 		BeliefState.pacmanXInit = pacmanXInit;
 		BeliefState.pacmanYInit = pacmanYInit;
 		BeliefState.listPGhostInit = listPGhostInit;
 		BeliefState.tailleCase = tailleCase;
-		BeliefState.taille = taille;
+		BeliefState.taille = level.getNbCases();
+	}
+
+	/**
+	 * create the initial state of a level
+	 * @param level the compiled level
+	 * @param score the current score
+	 * @param life the number of remaining lifes for Pacman
+	 * @return the state at the beginning of the level
+	 */
+	public static BeliefState fromLevel(CompiledMap level, int score, int life) {
+		BeliefState state = new BeliefState(level.getNbCases(), score, life);
+		for(int i = 0; i < level.getNbCases(); i++) {
+			for(int j = 0; j < level.getNbCases(); j++) {
+				state.modifyMap(i, j, level.getCase(i, j));
+			}
+		}
+		return state;
 	}
 	/**
 	 * create a new BeliefState object
@@ -187,7 +214,55 @@ public class BeliefState implements Comparable{
 	}*/
 	
 	public int compareTo(Object o) {
-		BeliefState bs = (BeliefState) o;
+		return this.compareTo((BeliefState) o, -1);
+	}
+
+	/**
+	 * build the mirror image of this state about the vertical axis of a symmetric level (see CompiledMap.isMirrorSymmetric):
+	 * columns, LEFT and RIGHT are swapped, and each ghost takes the place of the ghost that starts on the mirror of its cell
+	 * @return the mirrored state, which plays as this one with LEFT and RIGHT swapped
+	 * @pre getLevel().isMirrorSymmetric()
+	 */
+	public BeliefState mirror() {
+		int[] mirrorGhosts = BeliefState.level.getMirrorGhosts();
+		int n = this.map.length;
+		BeliefState bs = new BeliefState(n, this.score, this.life);
+		for(int i = 0; i < n; i++) {
+			for(int j = 0; j < n; j++) {
+				bs.map[i][n - 1 - j] = this.map[i][j];
+			}
+		}
+		bs.pacmanPos = BeliefState.mirror(this.pacmanPos, n);
+		bs.pacmanOldPos = BeliefState.mirror(this.pacmanOldPos, n);
+		bs.nbrOfGommes = this.nbrOfGommes;
+		bs.nbrOfSuperGommes = this.nbrOfSuperGommes;
+		for(int k = 0; k < this.listPGhost.size(); k++) {
+			bs.listPGhost.add(null);
+			bs.compteurPeur.add(0);
+		}
+		for(int k = 0; k < this.listPGhost.size(); k++) {//le fantome k prend la place de son symetrique
+			TreeSet<Position> positions = new TreeSet<Position>();
+			for(Position pos: this.listPGhost.get(k)) {
+				positions.add(BeliefState.mirror(pos, n));
+			}
+			bs.listPGhost.set(mirrorGhosts[k], positions);
+			bs.compteurPeur.set(mirrorGhosts[k], this.compteurPeur.get(k));
+		}
+		return bs;
+	}
+
+	private static Position mirror(Position pos, int n) {
+		char dir = pos.dir == 'L' ? 'R' : pos.dir == 'R' ? 'L' : pos.dir;
+		return new Position(pos.x, n - 1 - pos.y, dir);
+	}
+
+	/**
+	 * compare two states without looking at the possible positions of one ghost
+	 * @param bs the state to compare to
+	 * @param skippedGhost the ghost whose positions are not compared, -1 to compare them all
+	 * @return 0 if the two states only differ by the positions of the skipped ghost
+	 */
+	private int compareTo(BeliefState bs, int skippedGhost) {
 		int comp = this.pacmanPos.compareTo(bs.pacmanPos);
 		if(comp != 0)
 			return comp;
@@ -203,30 +278,94 @@ public class BeliefState implements Comparable{
 		comp = this.nbrOfSuperGommes - bs.nbrOfSuperGommes;
 		if(comp != 0)
 			return comp;
-		for(int[] pos:BeliefState.gamePositions) {
-			comp = this.map[pos[0]][pos[1]] - bs.map[pos[0]][pos[1]];
-			if(comp != 0)
-				return comp;
-		}
 		for(int i = 0; i < this.compteurPeur.size(); i++) {
 			comp = this.compteurPeur.get(i) - bs.compteurPeur.get(i);
 			if(comp != 0)
 				return comp;
 		}
 		for(int i = 0; i < this.listPGhost.size(); i++) {
+			if(i == skippedGhost)
+				continue;
 			TreeSet<Position> posGhost1 = this.listPGhost.get(i), posGhost2 = bs.listPGhost.get(i);
 			comp = posGhost1.size() - posGhost2.size();
 			if(comp != 0)
 				return comp;
 			Iterator<Position> iterPos1 = posGhost1.descendingIterator(), iterPos2 = posGhost2.descendingIterator();
-			for(Position pos1 = iterPos1.next(), pos2 = iterPos2.next(); iterPos1.hasNext(); pos1 = iterPos1.next(), pos2 = iterPos2.next()) {
-				comp = pos1.compareTo(pos2);
+			while(iterPos1.hasNext()) {//every position is compared, the last one included
+				comp = iterPos1.next().compareTo(iterPos2.next());
 				if(comp != 0)
 					return comp;
 			}
 		}
+		//the map is compared last, the states of a Result usually differ by their ghosts
+		for(int[] pos:BeliefState.gamePositions) {
+			comp = this.map[pos[0]][pos[1]] - bs.map[pos[0]][pos[1]];
+			if(comp != 0)
+				return comp;
+		}
 		return 0;
 	}
+
+	/**
+	 * collapse a list of states into an equivalent list:
+	 * the states that are equal are kept once, and the states that only differ by the possible positions of one ghost
+	 * are replaced by one state where this ghost can be at the positions of all of them, as extendsBeliefState does,
+	 * provided that none of these positions is visible from Pacman (a ghost that Pacman sees has its own state,
+	 * and the states where several ghosts differ are kept apart, their union would add combinations of positions
+	 * that none of them allows)
+	 * on the shipped maps the states of one Result are already distinct, it is only used there with AI.mergeBeliefs,
+	 * but the states reached from several states do merge (see AI.followCorridor)
+	 * @param states the states to merge, the positions of their ghosts may be modified
+	 * @return the merged states, in the order of their first occurrence in states
+	 */
+	public static ArrayList<BeliefState> merge(ArrayList<BeliefState> states) {
+		if(states.size() < 2)
+			return states;
+		ArrayList<BeliefState> merged = new ArrayList<BeliefState>(states.size());
+		TreeSet<BeliefState> seen = new TreeSet<BeliefState>();
+		for(BeliefState state: states) {
+			if(seen.add(state))
+				merged.add(state);
+		}
+		for(int k = 0; merged.size() > 1 && k < merged.get(0).listPGhost.size(); k++) {//one pass per ghost
+			final int ghost = k;
+			TreeMap<BeliefState, BeliefState> hidden = new TreeMap<BeliefState, BeliefState>((bs1, bs2) -> bs1.compareTo(bs2, ghost));
+			ArrayList<BeliefState> kept = new ArrayList<BeliefState>(merged.size());
+			for(BeliefState state: merged) {
+				if(!state.hiddenFromPacman(state.listPGhost.get(k))) {
+					kept.add(state);
+					continue;
+				}
+				BeliefState into = hidden.get(state);
+				if(into == null) {
+					hidden.put(state, state);
+					kept.add(state);
+				}
+				else {//the key of into does not depend on the positions of this ghost, it stays valid
+					TreeSet<Position> union = new TreeSet<Position>(into.listPGhost.get(k));
+					union.addAll(state.listPGhost.get(k));
+					into.listPGhost.set(k, union);
+				}
+			}
+			merged = kept;
+		}
+		if(SearchStats.ENABLED) {
+			SearchStats.add(SearchStats.MERGED_STATES, states.size() - merged.size());
+		}
+		return merged;
+	}
+
+	/**
+	 * @param positions possible positions of a ghost
+	 * @return true if Pacman sees none of them
+	 */
+	private boolean hiddenFromPacman(TreeSet<Position> positions) {
+		for(Position pos: positions) {
+			if(BeliefState.isVisible(pos.x, pos.y, this.pacmanPos.x, this.pacmanPos.y))
+				return false;
+		}
+		return true;
+	}
 	
 	/**
 	 * construct a copy of the state
@@ -235,16 +374,20 @@ public class BeliefState implements Comparable{
 	 */
 
 	public BeliefState(BeliefState toCopy, boolean isDead) {
-		this(BeliefState.taille, toCopy.score, toCopy.life);
-		this.pacmanPos.dir = toCopy.pacmanPos.dir;
+		// the rows and the counters are copied as they are, instead of reading the whole map again
+		this.map = new char[toCopy.map.length][];
 		for(int i = 0; i < this.map.length; i++) {
-			for(int j = 0; j < this.map[i].length; j++) {
-				this.modifyMap(i, j, toCopy.map[i][j]);
-			}
+			this.map[i] = toCopy.map[i].clone();
 		}
+		this.pacmanPos = toCopy.pacmanPos.clone();
+		this.score = toCopy.score;
+		this.life = toCopy.life;
+		this.nbrOfGommes = toCopy.nbrOfGommes;
+		this.nbrOfSuperGommes = toCopy.nbrOfSuperGommes;
 		this.pacmanOldPos = toCopy.pacmanOldPos.clone();
+		this.listPGhost = new ArrayList<TreeSet<Position>>(toCopy.listPGhost.size());
+		this.compteurPeur = new ArrayList<Integer>(toCopy.compteurPeur.size());
 		if(!isDead) {
-			this.listPGhost.clear();
 			for(TreeSet<Position> listP: toCopy.listPGhost) {
 				TreeSet<Position> newListP = new TreeSet<Position>();
 				for(Position pos: listP.descendingSet()) {
@@ -252,11 +395,15 @@ public class BeliefState implements Comparable{
 				}
 				this.listPGhost.add(newListP);
 			}
-			for(int i = 0; i < toCopy.compteurPeur.size(); i++) {
-				this.compteurPeur.set(i, toCopy.compteurPeur.get(i));
-			}
+			this.compteurPeur.addAll(toCopy.compteurPeur);
 		}
 		else {
+			for(int[] posInit: BeliefState.listPGhostInit) {//the ghosts are back to their initial position
+				TreeSet<Position> posGhost = new TreeSet<Position>();
+				posGhost.add(new Position(posInit[1] / BeliefState.tailleCase, posInit[0] / BeliefState.tailleCase, 'U'));
+				this.listPGhost.add(posGhost);
+				this.compteurPeur.add(0);
+			}
 			this.life = toCopy.life - 1;
 			this.moveTo(BeliefState.pacmanYInit / BeliefState.tailleCase, BeliefState.pacmanXInit / BeliefState.tailleCase, 'U');
 		}
@@ -887,7 +1034,7 @@ public class BeliefState implements Comparable{
 				listAlternativeBeliefState.add(stateRemoved);
 			}
 		}
-		return new Result(listAlternativeBeliefState);
+		return new Result(AI.mergeBeliefs ? BeliefState.merge(listAlternativeBeliefState) : listAlternativeBeliefState);
 	}
 
 	/**
@@ -955,18 +1102,55 @@ public class BeliefState implements Comparable{
 	 * @param posG actual position of the ghost
 	 */
 	public static void filter(ArrayList<BeliefState> listBeliefState, int gId, Position posG) {
-		ArrayList<BeliefState> copy = (ArrayList<BeliefState>)listBeliefState.clone();
-		for(int i = 0; i < listBeliefState.size(); i++) {
-			BeliefState state = listBeliefState.get(i);
-			if(!state.listPGhost.get(gId).contains(posG)) {
-				if(listBeliefState.size() == 1)
-					System.out.println("problem");
-				else {
-					listBeliefState.remove(i);
-					i--;
-				}
+		if(listBeliefState.isEmpty())
+			return;
+		Position[] posGhosts = new Position[listBeliefState.get(0).listPGhost.size()];
+		posGhosts[gId] = posG;
+		BeliefState.filter(listBeliefState, posGhosts);
+	}
+
+	/**
+	 * remove from a list of states all the states that do not agree with the actual positions of the ghosts, in one pass:
+	 * for each ghost the states where it can be at its position are marked in a bitset, the bitsets are intersected
+	 * and the list is compacted once
+	 * as when the ghosts were filtered one after the other, the list is never emptied: when no state agrees with
+	 * the position of a ghost, only the last remaining state is kept
+	 * @param listBeliefState list of state to be updated
+	 * @param posGhosts actual position of each ghost (null if the ghost is not observed)
+	 * @return false if the position of a ghost was in none of the states
+	 */
+	public static boolean filter(ArrayList<BeliefState> listBeliefState, Position[] posGhosts) {
+		int size = listBeliefState.size();
+		if(size == 0)
+			return true;
+		BitSet kept = new BitSet(size), agree = new BitSet(size);
+		kept.set(0, size);
+		boolean consistent = true;
+		for(int g = 0; g < posGhosts.length; g++) {
+			if(posGhosts[g] == null)
+				continue;
+			agree.clear();
+			for(int i = kept.nextSetBit(0); i >= 0; i = kept.nextSetBit(i + 1)) {
+				if(listBeliefState.get(i).listPGhost.get(g).contains(posGhosts[g]))
+					agree.set(i);
+			}
+			if(agree.isEmpty()) {
+				System.out.println("problem");
+				consistent = false;
+				int last = kept.previousSetBit(size - 1);
+				kept.clear();
+				kept.set(last);
+			}
+			else {
+				kept.and(agree);
 			}
 		}
+		int nbrKept = 0;
+		for(int i = kept.nextSetBit(0); i >= 0; i = kept.nextSetBit(i + 1)) {
+			listBeliefState.set(nbrKept++, listBeliefState.get(i));
+		}
+		listBeliefState.subList(nbrKept, size).clear();
+		return consistent;
 	}
 
 	/**
@@ -1247,6 +1431,18 @@ public class BeliefState implements Comparable{
 		return this.nbrOfSuperGommes;
 	}
 	
+	/**
+	 * return the size of the belief: the number of possible positions, summed over the ghosts
+	 * @return the number of possible ghost positions
+	 */
+	public int getNbrOfGhostPositions() {
+		int nbr = 0;
+		for(TreeSet<Position> positions: this.listPGhost) {
+			nbr += positions.size();
+		}
+		return nbr;
+	}
+	
 	/**
 	 * return the number of ghosts
 	 * @return number of ghosts
@@ -1278,75 +1474,189 @@ public class BeliefState implements Comparable{
 	public TreeSet<Position> getGhostPositions(int i){
 		return this.listPGhost.get(i);
 	}
+
+	void setGhostPositions(int i, TreeSet<Position> positions) {
+		this.listPGhost.set(i, positions);
+	}
 	public static boolean isVisible(int row1, int column1, int row2, int column2) {
-		//System.out.println("isVisible " + row1 + "," + column1 + ";" + row2 + "," + column2);
-		if(row1 == row2) {
-			//System.out.println("row " + row1 + " columns " + column1 + "," + column2);
-			return BeliefState.visible.contains(row1+","+Math.min(column1,column2)+";"+row2+","+Math.max(column1, column2));
+		return BeliefState.level.isVisible(row1, column1, row2, column2);
+	}
+
+	/**
+	 * return the compiled level the states belong to
+	 * @return the compiled level
+	 */
+	public static CompiledMap getLevel() {
+		return BeliefState.level;
+	}
+	
+	/**
+	 * return the initial position of Pacman, in pixels
+	 * @return {x, y} (column and row times the size of a cell)
+	 */
+	static int[] getPacmanInit() {
+		int[] pos = {BeliefState.pacmanXInit, BeliefState.pacmanYInit};
+		return pos;
+	}
+	
+	/**
+	 * return the initial positions of the ghosts, in pixels
+	 * @return the list of {x, y} (column and row times the size of a cell)
+	 */
+	static ArrayList<int[]> getListPGhostInit() {
+		return BeliefState.listPGhostInit;
+	}
+	
+	/**
+	 * return the size of a cell, in pixels
+	 * @return the size of a cell
+	 */
+	static int getTailleCase() {
+		return BeliefState.tailleCase;
+	}
+	
+	/**
+	 * write the state in binary form (the level it belongs to is not written, see SnapshotCorpus)
+	 * @param out the stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeShort(this.map.length);
+		for(char[] row: this.map) {
+			for(char c: row) {
+				out.writeByte(c);
+			}
 		}
-		if(column1 == column2) {
-			//System.out.println("column " + column1 + " rows " + row1 + "," + row2);
-			return BeliefState.visible.contains(Math.min(row1, row2)+","+column1+";"+Math.max(row1, row2)+","+column2);
+		writePosition(out, this.pacmanPos);
+		writePosition(out, this.pacmanOldPos);
+		out.writeInt(this.score);
+		out.writeInt(this.life);
+		out.writeInt(this.nbrOfGommes);
+		out.writeInt(this.nbrOfSuperGommes);
+		out.writeShort(this.listPGhost.size());
+		for(int i = 0; i < this.listPGhost.size(); i++) {
+			out.writeInt(this.compteurPeur.get(i));
+			out.writeInt(this.listPGhost.get(i).size());
+			for(Position pos: this.listPGhost.get(i)) {
+				writePosition(out, pos);
+			}
 		}
-		return false;
 	}
 	
-	public int distanceMinToGum() {
-		LinkedList<int[]> queue = new LinkedList<int[]>();
-		HashSet<String> visited = new HashSet<String>();
-		int[] posP = new int[3];
-		posP[0] = this.pacmanPos.x;
-		posP[1] = this.pacmanPos.y;
-		posP[2] = 0;
-		queue.add(posP);
-		while(!queue.isEmpty()) {
-			int[] next = queue.pollFirst();
-			visited.add(next[0] + "," + next[1]);
-			if(next[0] > 0) {
-				if(!visited.contains((next[0] - 1) + "," + next[1])) {
-					char content = this.map[next[0] - 1][next[1]];
-					switch(content) {
-					case '.':
-					case '*': return next[2] + 1;
-					case '#': break;
-					default: int[] neighbor = {next[0] - 1, next[1], next[2] + 1}; queue.add(neighbor);
-					}
-				}
+	/**
+	 * read a state written by write
+	 * @param in the stream to read from
+	 * @return the state
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static BeliefState read(DataInputStream in) throws IOException {
+		int size = in.readUnsignedShort();
+		BeliefState state = new BeliefState(size, 0, 0);
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++) {
+				state.map[i][j] = (char)in.readUnsignedByte();
 			}
-			if(next[0] < BeliefState.taille - 1) {
-				if(!visited.contains((next[0] + 1) + "," + next[1])) {
-					char content = this.map[next[0] + 1][next[1]];
-					switch(content) {
-					case '.':
-					case '*': return next[2] + 1;
-					case '#': break;
-					default: int[] neighbor = {next[0] + 1, next[1], next[2] + 1}; queue.add(neighbor);
-					}
-				}
+		}
+		state.pacmanPos = readPosition(in);
+		state.pacmanOldPos = readPosition(in);
+		state.score = in.readInt();
+		state.life = in.readInt();
+		state.nbrOfGommes = in.readInt();
+		state.nbrOfSuperGommes = in.readInt();
+		int nbrOfGhosts = in.readUnsignedShort();
+		for(int i = 0; i < nbrOfGhosts; i++) {
+			state.compteurPeur.add(in.readInt());
+			int nbrPos = in.readInt();
+			TreeSet<Position> positions = new TreeSet<Position>();
+			for(int k = 0; k < nbrPos; k++) {
+				positions.add(readPosition(in));
 			}
-			if(next[1] > 0) {
-				if(!visited.contains(next[0] + "," + (next[1] - 1))) {
-					char content = this.map[next[0]][next[1] - 1];
-					switch(content) {
-					case '.':
-					case '*': return next[2] + 1;
-					case '#': break;
-					default: int[] neighbor = {next[0], next[1] - 1, next[2] + 1}; queue.add(neighbor);
-					}
+			state.listPGhost.add(positions);
+		}
+		return state;
+	}
+	
+	static void writePosition(DataOutputStream out, Position pos) throws IOException {
+		out.writeShort(pos.x);
+		out.writeShort(pos.y);
+		out.writeByte(pos.dir);
+	}
+	
+	static Position readPosition(DataInputStream in) throws IOException {
+		int x = in.readShort();
+		int y = in.readShort();
+		return new Position(x, y, (char)in.readUnsignedByte());
+	}
+	
+	/**
+	 * compute the length of the shortest path from Pacman to the nearest gum (breadth first search)
+	 * the search uses the transition table of the compiled level and a stamp per cell instead of a set of visited cells,
+	 * so that it does not allocate anything on large maps
+	 * @return the distance to the nearest gum, Integer.MAX_VALUE if no gum can be reached
+	 */
+	public int distanceMinToGum() {
+		CompiledMap level = BeliefState.level;
+		int nbCells = level.getGamePositions().size();
+		if(BeliefState.stamps == null || BeliefState.stamps.length != nbCells) {
+			BeliefState.stamps = new int[nbCells];
+			BeliefState.queue = new int[nbCells];
+			BeliefState.distances = new int[nbCells];
+			BeliefState.stamp = 0;
+		}
+		if(++BeliefState.stamp == 0) {
+			Arrays.fill(BeliefState.stamps, 0);
+			BeliefState.stamp = 1;
+		}
+		int[] stamps = BeliefState.stamps, queue = BeliefState.queue, distances = BeliefState.distances;
+		int start = level.getNumeroCase(this.pacmanPos.x, this.pacmanPos.y);
+		int first = 0, last = 0;
+		queue[last++] = start;
+		stamps[start] = BeliefState.stamp;
+		distances[start] = 0;
+		while(first < last) {
+			int cell = queue[first++];
+			for(int dir = 0; dir < 4; dir++) {
+				int neighbor = level.next(cell, dir);
+				if(neighbor != -1 && stamps[neighbor] != BeliefState.stamp) {
+					int[] pos = BeliefState.gamePositions.get(neighbor);
+					char content = this.map[pos[0]][pos[1]];
+					if(content == '.' || content == '*')
+						return distances[cell] + 1;
+					stamps[neighbor] = BeliefState.stamp;
+					distances[neighbor] = distances[cell] + 1;
+					queue[last++] = neighbor;
 				}
 			}
-			if(next[1] < BeliefState.taille - 1) {
-				if(!visited.contains(next[0] + "," + (next[1] + 1))) {
-					char content = this.map[next[0]][next[1] + 1];
-					switch(content) {
-					case '.':
-					case '*': return next[2] + 1;
-					case '#': break;
-					default: int[] neighbor = {next[0], next[1] + 1, next[2] + 1}; queue.add(neighbor);
-					}
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * compute the length of the shortest path from Pacman to every free cell (breadth first search over the transitions
+	 * of the compiled level, as distanceMinToGum)
+	 * @return the distances, indexed by the cell numbers of CompiledMap, Integer.MAX_VALUE for the cells that cannot be reached
+	 */
+	public int[] distancesFromPacman() {
+		CompiledMap level = BeliefState.level;
+		int[] distances = new int[level.getGamePositions().size()];
+		Arrays.fill(distances, Integer.MAX_VALUE);
+		int start = level.getNumeroCase(this.pacmanPos.x, this.pacmanPos.y);
+		if(start == -1)
+			return distances;
+		int[] queue = new int[distances.length];
+		int first = 0, last = 0;
+		queue[last++] = start;
+		distances[start] = 0;
+		while(first < last) {
+			int cell = queue[first++];
+			for(int dir = 0; dir < 4; dir++) {
+				int neighbor = level.next(cell, dir);
+				if(neighbor != -1 && distances[neighbor] == Integer.MAX_VALUE) {
+					distances[neighbor] = distances[cell] + 1;
+					queue[last++] = neighbor;
 				}
 			}
 		}
-		return Integer.MAX_VALUE;
+		return distances;
 	}
 }
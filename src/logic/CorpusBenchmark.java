@@ -0,0 +1,213 @@
+package logic;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import view.Canvas;
+
+/**
+ * Runs AI.findNextMove on every snapshot of a corpus (see SnapshotCorpus) and reports, for each snapshot,
+ * the median latency, the number of search nodes and the chosen move.
+ * The report can be saved as a baseline. A later run compared to it flags as regressions the snapshots whose
+ * node count grew beyond a tolerance, and the whole corpus if the geometric mean of the latency ratios did;
+ * the snapshots that are slower beyond the tolerance (latency alone is noisy) and those where the chosen move
+ * changed are listed as well.
+ * options :
+ *   --runs n          number of runs per snapshot, the median latency is kept (5 by default)
+ *   --warmup n        number of runs over the whole corpus before measuring, for the JIT (1 by default)
+ *   --save file       save the report as a baseline
+ *   --baseline file   compare to a baseline
+ *   --tolerance t     ratio above which a latency or a node count has grown (1.2 by default)
+ *   --min-delta ms    latency increases smaller than this are never listed (0.5 by default)
+ * The exit status is 1 if a regression is found.
+ */
+public class CorpusBenchmark {
+
+	/**
+	 * The measures of one snapshot
+	 */
+	static class Measure {
+		final String id;
+		final int beliefSize;
+		final String move;
+		final long latency;//median, in ns
+		final long nodes;
+
+		Measure(String id, int beliefSize, String move, long latency, long nodes) {
+			this.id = id;
+			this.beliefSize = beliefSize;
+			this.move = move;
+			this.latency = latency;
+			this.nodes = nodes;
+		}
+
+		@Override
+		public String toString() {
+			return this.id + ";" + this.beliefSize + ";" + this.move + ";" + this.latency + ";" + this.nodes;
+		}
+
+		static Measure parse(String line) {
+			String[] fields = line.split(";");
+			return new Measure(fields[0], Integer.parseInt(fields[1]), fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+		}
+	}
+
+	static final String HEADER = "id;beliefSize;move;latencyNs;nodes";
+
+	/**
+	 * run the AI on each snapshot
+	 * @param snapshots the snapshots
+	 * @param runs number of runs per snapshot
+	 * @return one measure per snapshot
+	 */
+	static ArrayList<Measure> measure(List<SnapshotCorpus.Snapshot> snapshots, int runs) {
+		ArrayList<Measure> measures = new ArrayList<Measure>();
+		long[] latencies = new long[runs];
+		for(int s = 0; s < snapshots.size(); s++) {
+			SnapshotCorpus.Snapshot snapshot = snapshots.get(s);
+			BeliefState state = snapshot.getStates().get(0);
+			String move = null;
+			long nodes = 0;
+			for(int r = 0; r < runs; r++) {
+				snapshot.install();
+				long start = System.nanoTime();
+				String chosen = AI.findNextMove(state);
+				latencies[r] = System.nanoTime() - start;
+				int row = SearchStats.size() - 1;
+				nodes = SearchStats.get(row, SearchStats.AND_NODES) + SearchStats.get(row, SearchStats.OR_NODES);
+				if(move == null) {
+					move = chosen;
+				}
+				else if(!move.equals(chosen)) {
+					System.out.println("Snapshot " + s + " : coup non déterministe (" + move + " puis " + chosen + ")");
+				}
+			}
+			Arrays.sort(latencies);
+			measures.add(new Measure(s + "-" + snapshot.getTag(), state.getNbrOfGhostPositions(), move, latencies[runs / 2], nodes));
+		}
+		return measures;
+	}
+
+	/**
+	 * compare measures to a baseline
+	 * @param measures the current measures
+	 * @param baseline the measures of the baseline
+	 * @param tolerance ratio above which an increase is reported
+	 * @param minDelta latency increase (in ns) below which a snapshot is not reported as slower
+	 * @param out where to print the differences
+	 * @return the number of regressions
+	 */
+	static int compare(List<Measure> measures, List<Measure> baseline, double tolerance, long minDelta, PrintStream out) {
+		HashMap<String, Measure> byId = new HashMap<String, Measure>();
+		for(Measure m: baseline) {
+			byId.put(m.id, m);
+		}
+		int regressions = 0, slower = 0, changes = 0;
+		double ratioSum = 0;
+		int compared = 0;
+		for(Measure m: measures) {
+			Measure base = byId.get(m.id);
+			if(base == null) {
+				out.println("NEW        " + m.id);
+				continue;
+			}
+			compared++;
+			ratioSum += Math.log((double)Math.max(1, m.latency) / Math.max(1, base.latency));
+			if(m.latency > tolerance * base.latency && m.latency - base.latency > minDelta) {
+				out.printf("SLOWER     %s : latency %.3fms -> %.3fms%n", m.id, base.latency / 1e6, m.latency / 1e6);
+				slower++;
+			}
+			if(m.nodes > tolerance * base.nodes) {
+				out.println("REGRESSION " + m.id + " : nodes " + base.nodes + " -> " + m.nodes);
+				regressions++;
+			}
+			if(!m.move.equals(base.move)) {
+				out.println("CHANGED    " + m.id + " : move " + base.move + " -> " + m.move);
+				changes++;
+			}
+		}
+		double ratio = compared > 0 ? Math.exp(ratioSum / compared) : 1.0;
+		if(ratio > tolerance) {
+			out.printf("REGRESSION corpus : latency x%.3f%n", ratio);
+			regressions++;
+		}
+		out.printf("%d snapshots compared, latency x%.3f (geometric mean), %d regressions, %d slower snapshots, %d changed moves%n",
+				compared, ratio, regressions, slower, changes);
+		return regressions;
+	}
+
+	static ArrayList<Measure> readBaseline(String file) throws IOException {
+		ArrayList<Measure> measures = new ArrayList<Measure>();
+		for(String line: Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+			if(!line.isEmpty() && !line.equals(HEADER)) {
+				measures.add(Measure.parse(line));
+			}
+		}
+		return measures;
+	}
+
+	public static void main(String[] args) {
+		System.setProperty(SearchStats.PROPERTY, "true");//node counts
+		String corpus = null, save = null, baseline = null;
+		int runs = 5;
+		int warmup = 1;
+		double tolerance = 1.2;
+		double minDelta = 0.5;
+		for(int a = 0; a < args.length; a++) {
+			switch(args[a]) {
+			case "--runs": runs = Integer.parseInt(args[++a]); break;
+			case "--warmup": warmup = Integer.parseInt(args[++a]); break;
+			case "--save": save = args[++a]; break;
+			case "--baseline": baseline = args[++a]; break;
+			case "--tolerance": tolerance = Double.parseDouble(args[++a]); break;
+			case "--min-delta": minDelta = Double.parseDouble(args[++a]); break;
+			default: corpus = args[a];
+			}
+		}
+		if(corpus == null) {
+			System.out.println("Usage : java logic.CorpusBenchmark [options] corpus");
+			return;
+		}
+		Canvas.setHeadless(true);
+		int regressions = 0;
+		try {
+			ArrayList<SnapshotCorpus.Snapshot> snapshots = SnapshotCorpus.load(corpus);
+			for(int w = 0; w < warmup; w++) {
+				measure(snapshots, 1);
+			}
+			ArrayList<Measure> measures = measure(snapshots, runs);
+			LatencyHistogram histogram = new LatencyHistogram();
+			long nodes = 0;
+			System.out.println(HEADER);
+			for(Measure m: measures) {
+				System.out.println(m);
+				histogram.record(m.latency, m.beliefSize);
+				nodes += m.nodes;
+			}
+			System.out.println(snapshots.size() + " snapshots, " + nodes + " nodes : " + histogram.summary());
+			if(save != null) {
+				try(PrintStream out = new PrintStream(save)) {
+					out.println(HEADER);
+					for(Measure m: measures) {
+						out.println(m);
+					}
+				}
+			}
+			if(baseline != null) {
+				regressions = compare(measures, readBaseline(baseline), tolerance, (long)(minDelta * 1e6), System.out);
+			}
+		}
+		catch(IOException e) {
+			System.out.println("Erreur lors de la lecture du corpus : " + e.getMessage());
+			System.exit(2);
+		}
+		System.exit(regressions > 0 ? 1 : 0);
+	}
+}
@@ -79,22 +79,21 @@ abstract class Entite {
 	public abstract void move (int dx, int dy);
 
 	/**
-	 * verifie que la figure est aussi d'un type correspondant
+	 * verifie que la case est aussi d'un type correspondant
 	 * pour une interaction avec l'entite
-	 * @param  Figure f la figure avec qui faire potentiellement un interaction
-	 * @return vrai si l'entite doit faire des actions avec la figure
+	 * @param  byte tile le type de la case (Map.TILE_VIDE, TILE_MUR, TILE_GOMME ou TILE_SUPER_GOMME)
+	 * @return vrai si l'entite doit faire des actions avec la case
 	 */
-	public abstract boolean typeCaseToCheck (Figure f);
+	public abstract boolean typeCaseToCheck (byte tile);
 
 	/**
-	 * definie les actions que l'entite va devoir realiser avec un objet de type gomme
+	 * definie les actions que l'entite va devoir realiser avec une case contenant une gomme
 	 * qui est en position (i,j) sur la Map
-	 * @param Figure[][] map la carte ayant les objets de type gomme
-	 * @param int        i   position colonne pour la Map
-	 * @param int        j   position ligne dans la Map
+	 * @param int        i   position ligne dans la Map
+	 * @param int        j   position colonne dans la Map
 	 * *@pre (i>=0 && j>=0)
 	 */
-	protected abstract void actionWithGom (Figure[][] map, int i, int j);
+	protected abstract void actionWithGom (int i, int j);
 
 	/**
 	 * verifie les colisions entre l'entite et plusieurs Figure
@@ -108,7 +107,7 @@ abstract class Entite {
 	 */
 	protected int[] checkColision (String toward, int dx, int dy) {
 		int[] ret = new int[2];
-		Figure[][] map = this.map.getMap();
+		int taille = this.map.getTailleCase();
 
 		int[] colLign = this.getColLign();
 		int colonne = colLign[0];
@@ -116,24 +115,26 @@ abstract class Entite {
 
 		for (int i=colonne-1; i<=colonne+1; i++) {
 			for (int j=ligne-1; j<=ligne+1; j++) {
-				Figure f = map[j][i];
-				if (this.checkOneColision(f, dx, dy)) {
-					if (f instanceof Wall) {
+				byte tile = this.map.getTile(j, i);
+				int xf = i*taille;//x de la case
+				int yf = j*taille;//y de la case
+				if (this.checkOneColision(tile, xf, yf, taille, dx, dy)) {
+					if (tile == Map.TILE_MUR) {
 						if (toward.equals(PacManLauncher.UP)) {
 							//dy<0
-							dy = this.getY()-(f.getY()+f.getHeight());
+							dy = this.getY()-(yf+taille);
 						} else if (toward.equals(PacManLauncher.DOWN)) {
 							//dy>0
-							dy = (this.getY()+this.getWidth())-f.getY();
+							dy = (this.getY()+this.getWidth())-yf;
 						} else if (toward.equals(PacManLauncher.LEFT)) {
 							//dx<0
-							dx = this.getX()-(f.getX()+f.getWidth());
+							dx = this.getX()-(xf+taille);
 						} else if (toward.equals(PacManLauncher.RIGHT)) {
 							//dy>0
-							dx = (this.getX()+this.getWidth())-f.getX();
+							dx = (this.getX()+this.getWidth())-xf;
 						}
-					} else if (f instanceof Gomme) {
-						this.actionWithGom(map, j, i);
+					} else {
+						this.actionWithGom(j, i);
 					}
 				}
 			}
@@ -151,18 +152,18 @@ abstract class Entite {
 	 * la position fictive de l'Entite sur cette map
 	 */
 	protected int[] getColLign () {
-		Figure[][] map = this.map.getMap();
+		int nbCases = this.map.getNbCases();
 		int colonne = this.getX()/this.map.getTailleCase();
 		int ligne = this.getY()/this.map.getTailleCase();
 		if (colonne <= 0) {//gestion bord de map droite/gauche
 			colonne = 1;
-		} else if (colonne >= map.length-1) {
-			colonne = map.length-2;
+		} else if (colonne >= nbCases-1) {
+			colonne = nbCases-2;
 		}
 		if (ligne <= 0) {//gestion bord de map bas/haut
 			ligne = 1;
-		} else if (ligne >= map.length-1) {
-			ligne = map.length-2;
+		} else if (ligne >= nbCases-1) {
+			ligne = nbCases-2;
 		}
 
 		int[] ret = {colonne,ligne};
@@ -195,8 +196,8 @@ abstract class Entite {
 
 		int speed = this.getSpeed();
 		int width = this.getWidth()/4;
-		int heightMap = Canvas.HEIGHT;
-		int widthMap = Canvas.WIDTH;
+		int heightMap = this.map.getTaillePixels();
+		int widthMap = this.map.getTaillePixels();
 		if (toward.equals(PacManLauncher.UP)) {
 			//pacman is out the map of a part of his body
 			if ((y-speed) <= (-width)) {
@@ -233,37 +234,34 @@ abstract class Entite {
 
 
 	/**
-	 *	verifie si une colision entre l'entite et une Figure (avec laquelle l'entite doit interagir)
+	 *	verifie si une colision entre l'entite et une case (avec laquelle l'entite doit interagir)
 	 *	va se réaliser cad si les coordonnees des 4 points de Entite rentre en partie
-	 *	dans les coordonnees des 4 points de Figure
-	 * @param f la Figure etant l'obstacle
+	 *	dans les coordonnees des 4 points de la case
+	 * @param tile le type de la case
+	 * @param xf la position x de la case
+	 * @param yf la position y de la case
+	 * @param taille la taille de la case
 	 * @param dx le deplacement x qui va se faire
 	 * @param dy le deplacement y qui va se faire
-	 * @pre (f!=null)
 	 */
-	protected boolean checkOneColision (Figure f, int dx, int dy) {
+	protected boolean checkOneColision (byte tile, int xf, int yf, int taille, int dx, int dy) {
 		boolean ret = false;
 
-		assert (f!=null) : "Figure is null";
-		if (f != null) {
-			if (this.typeCaseToCheck(f)) {
-				int xf = f.getX();//x de f
-				int yf = f.getY();//y de f
-				int wf = f.getWidth();//largeur f
-				int hf = f.getHeight();//hauteur f
-
-				int xt = this.getX()+dx;//x
-				int yt = this.getY()+dy;//y
-				int st = this.getWidth();//size
-
-				boolean posMinX = (xt < (xf+wf)) || ((xt+st) < (xf+wf));//inferieur bord droit
-				boolean posMaxX = (xt > xf) || (xt+st > xf);//superieur bord gauche
-				boolean posMinY = (yt < (yf+hf)) || (yt+st < (yf+hf));//inferieur bord bas
-				boolean posMaxY = (yt > yf) || (yt+st > yf);//superieur bord haut
-
-				if (posMinX && posMaxX && posMinY && posMaxY) {
-					ret = true;
-				}
+		if (this.typeCaseToCheck(tile)) {
+			int wf = taille;//largeur de la case
+			int hf = taille;//hauteur de la case
+
+			int xt = this.getX()+dx;//x
+			int yt = this.getY()+dy;//y
+			int st = this.getWidth();//size
+
+			boolean posMinX = (xt < (xf+wf)) || ((xt+st) < (xf+wf));//inferieur bord droit
+			boolean posMaxX = (xt > xf) || (xt+st > xf);//superieur bord gauche
+			boolean posMinY = (yt < (yf+hf)) || (yt+st < (yf+hf));//inferieur bord bas
+			boolean posMaxY = (yt > yf) || (yt+st > yf);//superieur bord haut
+
+			if (posMinX && posMaxX && posMinY && posMaxY) {
+				ret = true;
 			}
 		}
 
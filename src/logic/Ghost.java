@@ -1,6 +1,7 @@
 package logic;
 //import java.awt.*;
 import java.util.ArrayList;
+import java.util.Random;
 
 import data.*;
 import view.*;
@@ -30,6 +31,8 @@ public class Ghost extends Entite {
 	public static final int SPEED_GHOST = 10;//doit etre un multiple de taille de case
 	public static final int SCORE_FANTOME = 100;
 	public static final int TIME_PEUR = 60;
+	/** Generateur aleatoire des choix aux croisements (initialisé avec la graine de la partie pour pouvoir la rejouer) */
+	private static Random rand = new Random();
 
 
 	/**
@@ -55,6 +58,14 @@ public class Ghost extends Entite {
 		this.id = id;
 	}
 
+	/**
+	 * Initialise le generateur aleatoire des fantomes
+	 * @param seed la graine de la partie
+	 */
+	public static void setSeed(long seed) {
+		Ghost.rand.setSeed(seed);
+	}
+
 	/**
 	 *	Choisir une direction aleatoire
 	 */
@@ -172,7 +183,6 @@ public class Ghost extends Entite {
 	public int checkCroisement (String toward, boolean moveBeliefState) {
 		boolean haveMoved = false;
 		int reInit = 0;
-		Figure[][] map = this.map.getMap();
 
 		if(this.getX() % this.map.getTailleCase() == 0 && this.getY() % this.map.getTailleCase() == 0) {//si le ghost se trouve sur une case
 			int yG = this.getX() / this.map.getTailleCase();//position actuelle du ghost
@@ -231,55 +241,63 @@ public class Ghost extends Entite {
 				int colonne = colLign[0];
 				int ligne = colLign[1];
 
-				Figure fup = map[ligne-1][colonne];
-				Figure fdown = map[ligne+1][colonne];
-				Figure fleft = map[ligne][colonne-1];
-				Figure fright = map[ligne][colonne+1];
+				boolean murUp = this.map.isWall(ligne-1, colonne);
+				boolean murDown = this.map.isWall(ligne+1, colonne);
+				boolean murLeft = this.map.isWall(ligne, colonne-1);
+				boolean murRight = this.map.isWall(ligne, colonne+1);
 
-				ArrayList<Figure> caseAround =  new ArrayList<Figure>();
-				caseAround.add(fup);
-				caseAround.add(fdown);
-				caseAround.add(fleft);
-				caseAround.add(fright);
+				ArrayList<String> caseAround =  new ArrayList<String>();//directions possibles (sans les murs)
+				if (!murUp) {
+					caseAround.add(PacManLauncher.UP);
+				}
+				if (!murDown) {
+					caseAround.add(PacManLauncher.DOWN);
+				}
+				if (!murLeft) {
+					caseAround.add(PacManLauncher.LEFT);
+				}
+				if (!murRight) {
+					caseAround.add(PacManLauncher.RIGHT);
+				}
 
 				switch (toward) {
 				case PacManLauncher.UP :
-					if (fleft.getClass().getName().compareTo("view.Wall") != 0 || fright.getClass().getName().compareTo("view.Wall") != 0) {
-						caseAround.remove(fdown);
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					if (!murLeft || !murRight) {
+						caseAround.remove(PacManLauncher.DOWN);
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
-					} else if (fup.getClass().getName().compareTo("view.Wall") == 0) {
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					} else if (murUp) {
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
 					}
 					break;
 				case PacManLauncher.DOWN :
-					if (fleft.getClass().getName().compareTo("view.Wall") != 0 || fright.getClass().getName().compareTo("view.Wall") != 0) {
-						caseAround.remove(fup);
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					if (!murLeft || !murRight) {
+						caseAround.remove(PacManLauncher.UP);
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
-					} else if (fdown.getClass().getName().compareTo("view.Wall") == 0) {
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					} else if (murDown) {
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
 					}
 					break;
 				case PacManLauncher.LEFT :
-					if (fup.getClass().getName().compareTo("view.Wall") != 0 || fdown.getClass().getName().compareTo("view.Wall") != 0) {
-						caseAround.remove(fright);
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					if (!murUp || !murDown) {
+						caseAround.remove(PacManLauncher.RIGHT);
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
-					} else if (fleft.getClass().getName().compareTo("view.Wall") == 0) {
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					} else if (murLeft) {
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
 					}
 					break;
 				case PacManLauncher.RIGHT :
-					if (fup.getClass().getName().compareTo("view.Wall") != 0 || fdown.getClass().getName().compareTo("view.Wall") != 0) {
-						caseAround.remove(fleft);
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					if (!murUp || !murDown) {
+						caseAround.remove(PacManLauncher.LEFT);
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
-					} else if (fright.getClass().getName().compareTo("view.Wall") == 0) {
-						reInit = this.chooseMove(toward, caseAround, fup, fdown, fleft, fright, moveBeliefState);
+					} else if (murRight) {
+						reInit = this.chooseMove(toward, caseAround, moveBeliefState);
 						haveMoved = true;
 					}
 					break;
@@ -304,43 +322,42 @@ public class Ghost extends Entite {
 		return reInit;
 	}
 
-	public int chooseMove(String toward, ArrayList<Figure> listF, Figure fup, Figure fdown, Figure fleft, Figure fright, boolean moveBeliefState) {
-		ArrayList<Figure> toGo =  new ArrayList<Figure>();
+	/**
+	 * choisit aleatoirement une direction parmi celles possibles (ou la relit dans le journal de la partie rejouée)
+	 * et deplace le fantome dans cette direction
+	 * @param String toward la direction actuelle du fantome
+	 * @param ArrayList<String> toGo les directions possibles, sans mur
+	 * @param boolean moveBeliefState vrai si le deplacement doit aussi etre fait dans la croyance de la map
+	 * @return le resultat de BeliefState.moveGhost (0 si la croyance n'est pas mise a jour)
+	 */
+	public int chooseMove(String toward, ArrayList<String> toGo, boolean moveBeliefState) {
 		int returnedValue = 0;
-		for (Figure f : listF) {
-			if (f.getClass().getName().compareTo("view.Wall") != 0) {
-				toGo.add(f);
+		String nextMove;
+		PacManLauncher pml = this.map.getPml();
+		if (toGo.isEmpty()) {
+			nextMove = toward;
+		}
+		else if (pml != null && pml.getReplay() != null) {//la direction est relue dans le journal de la partie
+			nextMove = pml.getReplay().nextGhostChoice(this.id);
+			if (!toGo.contains(nextMove)) {
+				throw new IllegalStateException("Replay désynchronisé : le fantome " + this.id + " ne peut pas aller vers " + nextMove);
 			}
 		}
+		else {
+			nextMove = toGo.get(Ghost.rand.nextInt(toGo.size()));
+		}
+		if (pml != null && pml.getRecorder() != null && !toGo.isEmpty()) {
+			pml.getRecorder().recordGhost(this.id, nextMove);
+		}
 
-		Figure nextMove = toGo.get((int)Math.round(Math.floor(Math.random()*toGo.size())));
-
-		if (nextMove == null) {
-			this.move(toward);
-			if(moveBeliefState) {
-				switch(toward){
-				case PacManLauncher.UP: returnedValue = this.map.getBeliefState().moveGhost(-1, 0, this.id, this.previousMove.charAt(0)); break;
-				case PacManLauncher.DOWN: returnedValue = this.map.getBeliefState().moveGhost(1, 0, this.id, this.previousMove.charAt(0)); break;
-				case PacManLauncher.LEFT: returnedValue = this.map.getBeliefState().moveGhost(0, -1, this.id, this.previousMove.charAt(0)); break;
-				case PacManLauncher.RIGHT: returnedValue = this.map.getBeliefState().moveGhost(0, 1, this.id, this.previousMove.charAt(0)); break;
-				}
+		this.move(nextMove);
+		if(moveBeliefState) {
+			switch(nextMove){
+			case PacManLauncher.UP: returnedValue = this.map.getBeliefState().moveGhost(-1, 0, this.id, this.previousMove.charAt(0)); break;
+			case PacManLauncher.DOWN: returnedValue = this.map.getBeliefState().moveGhost(1, 0, this.id, this.previousMove.charAt(0)); break;
+			case PacManLauncher.LEFT: returnedValue = this.map.getBeliefState().moveGhost(0, -1, this.id, this.previousMove.charAt(0)); break;
+			case PacManLauncher.RIGHT: returnedValue = this.map.getBeliefState().moveGhost(0, 1, this.id, this.previousMove.charAt(0)); break;
 			}
-		} else if (nextMove == fup) {
-			this.move(PacManLauncher.UP);
-			if(moveBeliefState)
-				returnedValue = this.map.getBeliefState().moveGhost(-1, 0, this.id, this.previousMove.charAt(0));
-		} else if (nextMove == fdown) {
-			this.move(PacManLauncher.DOWN);
-			if(moveBeliefState)
-				returnedValue = this.map.getBeliefState().moveGhost(1, 0, this.id, this.previousMove.charAt(0));
-		} else if (nextMove == fleft) {
-			this.move(PacManLauncher.LEFT);
-			if(moveBeliefState)
-				returnedValue = this.map.getBeliefState().moveGhost(0, -1, this.id, this.previousMove.charAt(0));
-		} else if (nextMove == fright) {
-			this.move(PacManLauncher.RIGHT);
-			if(moveBeliefState)
-				returnedValue = this.map.getBeliefState().moveGhost(0, 1, this.id, this.previousMove.charAt(0));
 		}
 		return returnedValue;
 	}
@@ -349,11 +366,11 @@ public class Ghost extends Entite {
 	 *	les fantomes agissent sur les murs
 	 * mais pas les gommes
 	 */
-	public boolean typeCaseToCheck (Figure f) {
-		return (f instanceof Wall);
+	public boolean typeCaseToCheck (byte tile) {
+		return tile == Map.TILE_MUR;
 	}
 
-	protected void actionWithGom (Figure[][] map, int i, int j) {
+	protected void actionWithGom (int i, int j) {
 		//no interaction
 	}
 
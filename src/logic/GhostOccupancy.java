@@ -0,0 +1,190 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Probabilities of presence of the ghosts in the cells, derived from the belief sets: a ghost is equally likely at each
+ * of its possible positions, and moves from there by the rules of Ghost.checkCroisement (toward Pacman when it sees him
+ * and is not afraid, otherwise straight ahead, or a random open direction without turning back at junctions and walls).
+ * They give the probability of each belief state of a Result, used by the expectimax AND nodes of the search.
+ */
+public final class GhostOccupancy {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    private static final String DIRS = "UDLR";
+    private static final double EPSILON = 1e-6; // probability of a state that the rules do not explain
+
+    private GhostOccupancy() {
+    }
+
+    /**
+     * Give the probability that a ghost is in a cell
+     * @param state the belief state
+     * @param ghost the ghost
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @return the share of the possible positions of the ghost that are in this cell
+     */
+    public static double probability(BeliefState state, int ghost, int x, int y) {
+        TreeSet < Position > positions = state.getGhostPositions(ghost);
+        int inCell = 0;
+        for (Position pos: positions) {
+            if (pos.x == x && pos.y == y) {
+                inCell++;
+            }
+        }
+        return (double) inCell / positions.size();
+    }
+
+    /**
+     * Give the probability that at least one ghost is in each cell
+     * @param state the belief state
+     * @return the probabilities, indexed by row and column
+     */
+    public static double[][] occupancy(BeliefState state) {
+        char[][] map = state.getMap();
+        double[][] free = new double[map.length][map[0].length];
+        for (double[] row: free) {
+            Arrays.fill(row, 1);
+        }
+        for (int g = 0; g < state.getNbrOfGhost(); g++) {
+            HashMap < Integer, Double > cells = new HashMap < > ();
+            TreeSet < Position > positions = state.getGhostPositions(g);
+            for (Position pos: positions) {
+                cells.merge(pos.x * map[0].length + pos.y, 1.0 / positions.size(), Double::sum);
+            }
+            for (Map.Entry < Integer, Double > cell: cells.entrySet()) {
+                free[cell.getKey() / map[0].length][cell.getKey() % map[0].length] *= 1 - cell.getValue();
+            }
+        }
+        for (double[] row: free) {
+            for (int y = 0; y < row.length; y++) {
+                row[y] = 1 - row[y];
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Give the probability of each ghost in each cell after the next move, from a state
+     * @param state the state before the move
+     * @return for each ghost, the probability of the cells it can reach (cell numbered x * columns + y)
+     */
+    static ArrayList < HashMap < Integer, Double >> next(BeliefState state) {
+        char[][] map = state.getMap();
+        int columns = map[0].length;
+        Position pacman = state.getPacmanPos();
+        ArrayList < HashMap < Integer, Double >> next = new ArrayList < > (state.getNbrOfGhost());
+        int[] open = new int[4];
+        for (int g = 0; g < state.getNbrOfGhost(); g++) {
+            HashMap < Integer, Double > cells = new HashMap < > ();
+            next.add(cells);
+            TreeSet < Position > positions = state.getGhostPositions(g);
+            double share = 1.0 / positions.size();
+            boolean scared = state.getCompteurPeur(g) > 0;
+            for (Position pos: positions) {
+                int dir = DIRS.indexOf(pos.dir);
+                if (!scared && BeliefState.isVisible(pos.x, pos.y, pacman.x, pacman.y)) {// toward Pacman
+                    dir = pos.x > pacman.x ? 0 : pos.x < pacman.x ? 1 : pos.y < pacman.y ? 3 : 2;
+                    add(cells, map, pos, dir, share);
+                    continue;
+                }
+                // an unknown heading (-1) counts as a junction where the ghost may take any open direction
+                boolean sideOpen = dir < 0 || (dir < 2 ? isOpen(map, pos, 2) || isOpen(map, pos, 3) : isOpen(map, pos, 0) || isOpen(map, pos, 1));
+                if (!sideOpen && isOpen(map, pos, dir)) {// corridor: straight ahead
+                    add(cells, map, pos, dir, share);
+                    continue;
+                }
+                int nbrOpen = 0;
+                for (int d = 0; d < 4; d++) {
+                    if (isOpen(map, pos, d) && (d != (dir ^ 1) || !sideOpen)) {
+                        open[nbrOpen++] = d;
+                    }
+                }
+                if (nbrOpen == 0) {
+                    cells.merge(pos.x * columns + pos.y, share, Double::sum);
+                }
+                for (int i = 0; i < nbrOpen; i++) {
+                    add(cells, map, pos, open[i], share / nbrOpen);
+                }
+            }
+        }
+        return next;
+    }
+
+    private static void add(HashMap < Integer, Double > cells, char[][] map, Position pos, int dir, double p) {
+        int x = pos.x, y = pos.y;
+        if (isOpen(map, pos, dir)) {
+            x += DX[dir];
+            y += DY[dir];
+        }
+        cells.merge(x * map[0].length + y, p, Double::sum);
+    }
+
+    private static boolean isOpen(char[][] map, Position pos, int dir) {
+        int x = pos.x + DX[dir], y = pos.y + DY[dir];
+        return x >= 0 && y >= 0 && x < map.length && y < map[0].length && map[x][y] != '#';
+    }
+
+    /**
+     * Give the probability of each belief state of a Result: the product, over the ghosts, of the probability that the
+     * ghost moves to one of its positions in the state. A state where Pacman has died has the probability that a ghost
+     * is on his new cell or moves onto it, and a ghost sent back to its start (eaten) the probability that it was on Pacman's cell.
+     * @param parent the state the Result comes from
+     * @param children the states of the Result
+     * @return the probabilities of the children, in the same order, summing to 1
+     */
+    static double[] weights(BeliefState parent, List < NodeBeliefState > children) {
+        ArrayList < HashMap < Integer, Double >> next = next(parent);
+        int columns = parent.getMap()[0].length;
+        Position pacman = null; // cell of Pacman after the move
+        for (NodeBeliefState child: children) {
+            if (child.data.getLife() >= parent.getLife()) {
+                pacman = child.data.getPacmanPos();
+                break;
+            }
+        }
+        double[] weights = new double[children.size()];
+        double total = 0;
+        HashSet < Integer > cells = new HashSet < > ();
+        for (int c = 0; c < weights.length; c++) {
+            BeliefState child = children.get(c).data;
+            double weight = 1;
+            if (child.getLife() < parent.getLife()) {
+                double alive = 1;
+                for (int g = 0; pacman != null && g < next.size(); g++) {
+                    double now = probability(parent, g, pacman.x, pacman.y);
+                    alive *= 1 - Math.min(1, now + next.get(g).getOrDefault(pacman.x * columns + pacman.y, 0.0));
+                }
+                weight = pacman == null ? 1 : 1 - alive;
+            }
+            else {
+                for (int g = 0; g < next.size(); g++) {
+                    double mass = 0;
+                    cells.clear();
+                    for (Position pos: child.getGhostPositions(g)) {
+                        if (cells.add(pos.x * columns + pos.y)) {// the directions of a cell share its probability
+                            mass += next.get(g).getOrDefault(pos.x * columns + pos.y, 0.0);
+                        }
+                    }
+                    if (mass == 0) {// eaten by Pacman
+                        mass = next.get(g).getOrDefault(pacman.x * columns + pacman.y, 0.0);
+                    }
+                    weight *= Math.min(1, mass);
+                }
+            }
+            weights[c] = Math.max(EPSILON, weight);
+            total += weights[c];
+        }
+        for (int c = 0; c < weights.length; c++) {
+            weights[c] /= total;
+        }
+        return weights;
+    }
+}
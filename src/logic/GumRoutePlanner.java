@@ -0,0 +1,176 @@
+package logic;
+
+import data.CompiledMap;
+
+/**
+ * Route to the gums for the moves where no ghost can interfere: the distance of every free cell to the nearest gum
+ * (or super gum) is computed once by a breadth first search from all the gums, and only again when a gum has been
+ * eaten. The next move is then a step down these distances, which costs nothing compared to the AND-OR search.
+ * When the AI follows a GumTour, the route goes to the next target of the tour instead, with the table of distances
+ * of CompiledMap.
+ * AI.chooseMove only takes it when ReachabilityCones proves that no possible position of a ghost can reach Pacman
+ * within the depth of the search.
+ */
+public final class GumRoutePlanner {
+    private static final String DIRS = "UDLR"; // in the order of CompiledMap.UP, DOWN, LEFT, RIGHT
+
+    private static GumRoutePlanner current;
+    private static long fastMoves; // moves given by the planner since the start of the game
+    private static long searchedMoves; // moves given by the search
+    private static long rebuilds; // breadth first searches of the distances
+
+    private final CompiledMap level;
+    private final int[] distances; // distance of each free cell (numbered as in CompiledMap) to the nearest gum
+    private final int[] queue;
+    private int nbrOfGums = -1; // gums left in the state the distances were computed for
+
+    private GumRoutePlanner(CompiledMap level) {
+        this.level = level;
+        this.distances = new int[level.getGamePositions().size()];
+        this.queue = new int[this.distances.length];
+    }
+
+    /**
+     * give the planner of the current level (BeliefState.getLevel()), created on the first call for this level
+     * @return the planner
+     */
+    public static GumRoutePlanner forLevel() {
+        CompiledMap level = BeliefState.getLevel();
+        if (current == null || current.level != level) {
+            current = new GumRoutePlanner(level);
+        }
+        return current;
+    }
+
+    /**
+     * compute the distances to the gums of a state
+     */
+    private void compute(BeliefState state) {
+        int first = 0, last = 0;
+        for (int cell = 0; cell < this.distances.length; cell++) {
+            int[] pos = this.level.getGamePositions().get(cell);
+            char content = state.getMap(pos[0], pos[1]);
+            if (content == '.' || content == '*') {
+                this.distances[cell] = 0;
+                this.queue[last++] = cell;
+            } else {
+                this.distances[cell] = Integer.MAX_VALUE;
+            }
+        }
+        while (first < last) {
+            int cell = this.queue[first++];
+            for (int dir = 0; dir < 4; dir++) {
+                int neighbor = this.level.next(cell, dir);
+                if (neighbor != -1 && this.distances[neighbor] == Integer.MAX_VALUE) {
+                    this.distances[neighbor] = this.distances[cell] + 1;
+                    this.queue[last++] = neighbor;
+                }
+            }
+        }
+        this.nbrOfGums = state.getNbrOfGommes() + state.getNbrOfSuperGommes();
+        rebuilds++;
+    }
+
+    /**
+     * tell if going down the distances from a cell ends on a gum of the state (the distances may come from another
+     * state with as many gums, in another game)
+     */
+    private boolean leadsToGum(BeliefState state, int cell) {
+        if (this.distances[cell] == Integer.MAX_VALUE) {
+            return true; // nothing to check
+        }
+        while (this.distances[cell] > 0) {
+            int next = -1;
+            for (int dir = 0; dir < 4 && next == -1; dir++) {
+                int neighbor = this.level.next(cell, dir);
+                if (neighbor != -1 && this.distances[neighbor] == this.distances[cell] - 1) {
+                    next = neighbor;
+                }
+            }
+            if (next == -1) {
+                return false;
+            }
+            cell = next;
+        }
+        int[] pos = this.level.getGamePositions().get(cell);
+        char content = state.getMap(pos[0], pos[1]);
+        return content == '.' || content == '*';
+    }
+
+    /**
+     * distance of a cell to the nearest gum, or to a target
+     */
+    private int distance(int cell, int[] target) {
+        if (target == null) {
+            return this.distances[cell];
+        }
+        int[] pos = this.level.getGamePositions().get(cell);
+        int d = this.level.distance(pos[0], pos[1], target[0], target[1]);
+        return d < 0 ? Integer.MAX_VALUE : d;
+    }
+
+    /**
+     * give the first moves of a shortest path from Pacman to the nearest gum, or to a given gum, going on straight when
+     * several are as short
+     * @param state the state
+     * @param target the row and the column of the gum to go to, null for the nearest one
+     * @param directions filled with the directions of the moves (CompiledMap.UP, DOWN, LEFT or RIGHT)
+     * @param cells filled with the cells (numbered as in CompiledMap) Pacman is on after each move
+     * @return the number of moves, at most directions.length, shorter if the gum is closer; 0 if no gum can be reached
+     */
+    public int route(BeliefState state, int[] target, int[] directions, int[] cells) {
+        Position pacman = state.getPacmanPos();
+        int cell = this.level.getNumeroCase(pacman.x, pacman.y);
+        if (cell == -1) {
+            return 0;
+        }
+        if (state.getNbrOfGommes() + state.getNbrOfSuperGommes() != this.nbrOfGums || !this.leadsToGum(state, cell)) {
+            this.compute(state);
+        }
+        if (this.distance(cell, target) == Integer.MAX_VALUE) {
+            return 0;
+        }
+        int heading = DIRS.indexOf(pacman.dir);
+        int moves = 0;
+        while (moves < directions.length && this.distance(cell, target) > 0) {
+            int best = -1;
+            int distance = this.distance(cell, target);
+            for (int dir = 0; dir < 4; dir++) {
+                int neighbor = this.level.next(cell, dir);
+                if (neighbor != -1 && this.distance(neighbor, target) == distance - 1 && (best == -1 || dir == heading)) {
+                    best = dir;
+                }
+            }
+            heading = best;
+            cell = this.level.next(cell, best);
+            directions[moves] = best;
+            cells[moves++] = cell;
+        }
+        return moves;
+    }
+
+    /**
+     * count a move given by the planner or by the search
+     * @param fast true if the planner gave the move
+     */
+    static void count(boolean fast) {
+        if (fast) {
+            fastMoves++;
+        } else {
+            searchedMoves++;
+        }
+        if (SearchStats.ENABLED && fast) {
+            SearchStats.add(SearchStats.FAST_MOVES, 1);
+        }
+    }
+
+    /**
+     * Give how the moves have been chosen since the start of the game
+     * @return a line with the number of moves given by the planner and by the search, and of computations of the distances
+     */
+    public static String summary() {
+        long moves = fastMoves + searchedMoves;
+        return "gum route planner: " + fastMoves + " of " + moves + " moves without search ("
+            + (moves == 0 ? 0 : 100 * fastMoves / moves) + "%), " + searchedMoves + " searched, distances computed " + rebuilds + " times";
+    }
+}
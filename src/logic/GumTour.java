@@ -0,0 +1,202 @@
+package logic;
+
+import java.util.ArrayList;
+
+import data.CompiledMap;
+
+/**
+ * Approximate shortest tour of the remaining gums (and super gums), from the position of Pacman: built by nearest
+ * neighbour, then shortened by 2-opt moves (reversing a part of the tour when it makes it shorter), with the distances
+ * of the table of CompiledMap. When gums are eaten they are removed from the tour, which is improved again by a few
+ * 2-opt passes instead of being built again.
+ * With AI.useTour, the search uses the next target of the tour to choose between moves that already get Pacman closer
+ * to the nearest gum, and the fast path of the AI (GumRoutePlanner) goes to the next target. It is only a tie-break:
+ * on seeds 1 to 12 it shortened some levels and lengthened others, so it is off by default (see README).
+ * Only for the levels whose table of distances is kept (CompiledMap.MAX_CASES_DISTANCES).
+ */
+public final class GumTour {
+    private static final int MAX_PASSES = 50; // 2-opt passes when the tour is built
+    private static final int UPDATE_PASSES = 2; // 2-opt passes when gums have been eaten
+
+    private static GumTour current;
+
+    private final CompiledMap level;
+    private final ArrayList < int[] > positions; // row and column of each free cell
+    private int[] tour; // cells (numbered as in CompiledMap) of the gums, in the order of the tour
+    private int size;
+    private int start; // cell of Pacman when the tour was last updated
+
+    private long builds, updates, removed, improvements;
+
+    /**
+     * forget the tour, the next update builds it again (for the benchmarks, whose states do not follow each other)
+     */
+    static void clear() {
+        current = null;
+    }
+
+    private GumTour(CompiledMap level) {
+        this.level = level;
+        this.positions = level.getGamePositions();
+    }
+
+    /**
+     * give the tour of the current level (BeliefState.getLevel()), created on the first call for this level
+     * @return the tour, null if the level is too large for the table of distances
+     */
+    public static GumTour forLevel() {
+        CompiledMap level = BeliefState.getLevel();
+        if (current == null || current.level != level) {
+            current = level.getGamePositions().size() <= CompiledMap.MAX_CASES_DISTANCES ? new GumTour(level) : null;
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private int distance(int cell1, int cell2) {
+        int[] p1 = this.positions.get(cell1), p2 = this.positions.get(cell2);
+        int d = this.level.distance(p1[0], p1[1], p2[0], p2[1]);
+        return d < 0 ? this.positions.size() : d; // a gum that cannot be reached goes to the end
+    }
+
+    private boolean isGum(BeliefState state, int cell) {
+        int[] pos = this.positions.get(cell);
+        char content = state.getMap(pos[0], pos[1]);
+        return content == '.' || content == '*';
+    }
+
+    /**
+     * follow the state of the game: remove the eaten gums from the tour and improve it, or build it again if the state
+     * does not come from the previous one
+     * @param state the state of the game, before Pacman moves
+     */
+    public void update(BeliefState state) {
+        Position pacman = state.getPacmanPos();
+        this.start = this.level.getNumeroCase(pacman.x, pacman.y);
+        int kept = 0;
+        for (int i = 0; this.tour != null && i < this.size; i++) {
+            if (this.isGum(state, this.tour[i])) {
+                this.tour[kept++] = this.tour[i];
+            }
+        }
+        // the counters of the state may count gums out of the free cells, so the gums are counted on the map
+        int gums = 0;
+        for (int cell = 0; cell < this.positions.size(); cell++) {
+            if (this.isGum(state, cell)) {
+                gums++;
+            }
+        }
+        if (this.tour == null || kept != gums) {
+            this.build(state);
+            this.improve(MAX_PASSES);
+            this.builds++;
+        } else {
+            this.removed += this.size - kept;
+            this.size = kept;
+            this.improve(UPDATE_PASSES);
+            this.updates++;
+        }
+    }
+
+    /**
+     * nearest neighbour tour from Pacman
+     */
+    private void build(BeliefState state) {
+        ArrayList < Integer > gums = new ArrayList < > ();
+        for (int cell = 0; cell < this.positions.size(); cell++) {
+            if (this.isGum(state, cell)) {
+                gums.add(cell);
+            }
+        }
+        this.tour = new int[gums.size()];
+        this.size = 0;
+        int from = this.start;
+        while (!gums.isEmpty()) {
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < gums.size(); i++) {
+                int d = this.distance(from, gums.get(i));
+                if (d < bestDistance) {
+                    best = i;
+                    bestDistance = d;
+                }
+            }
+            from = gums.get(best);
+            this.tour[this.size++] = from;
+            gums.set(best, gums.get(gums.size() - 1));
+            gums.remove(gums.size() - 1);
+        }
+    }
+
+    /**
+     * 2-opt on the open path that starts on Pacman's cell: reverse tour[i..j] when it shortens the path
+     * @param passes the maximum number of passes over all the pairs (i, j)
+     */
+    private void improve(int passes) {
+        boolean improved = true;
+        for (int pass = 0; pass < passes && improved; pass++) {
+            improved = false;
+            for (int i = 0; i < this.size - 1; i++) {
+                int before = i == 0 ? this.start : this.tour[i - 1];
+                int removedIn = this.distance(before, this.tour[i]);
+                for (int j = i + 1; j < this.size; j++) {
+                    int removedOut = j + 1 < this.size ? this.distance(this.tour[j], this.tour[j + 1]) : 0;
+                    int addedIn = this.distance(before, this.tour[j]);
+                    int addedOut = j + 1 < this.size ? this.distance(this.tour[i], this.tour[j + 1]) : 0;
+                    if (addedIn + addedOut < removedIn + removedOut) {
+                        for (int a = i, b = j; a < b; a++, b--) {
+                            int cell = this.tour[a];
+                            this.tour[a] = this.tour[b];
+                            this.tour[b] = cell;
+                        }
+                        removedIn = addedIn;
+                        improved = true;
+                        this.improvements++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * index in the tour of the first gum that is still in a state (the states of the search may have eaten the first ones)
+     */
+    private int first(BeliefState state) {
+        int i = 0;
+        while (i < this.size && !this.isGum(state, this.tour[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * give the next gum of the tour that is still in a state
+     * @param state the state
+     * @return the row and the column of the gum, null if the state has no gum of the tour left
+     */
+    public int[] nextTarget(BeliefState state) {
+        int i = this.first(state);
+        return i < this.size ? this.positions.get(this.tour[i]) : null;
+    }
+
+    /**
+     * give the length of the path from Pacman to the next target of a state
+     * @param state the state
+     * @return the distance, 0 if the state has no gum of the tour left
+     */
+    public int targetDistance(BeliefState state) {
+        int i = this.first(state);
+        Position pacman = state.getPacmanPos();
+        return i < this.size ? this.distance(this.level.getNumeroCase(pacman.x, pacman.y), this.tour[i]) : 0;
+    }
+
+    /**
+     * @return a line with the number of builds and updates of the tour, of eaten gums removed and of 2-opt moves
+     */
+    public String summary() {
+        return "gum tour: built " + this.builds + " times, updated " + this.updates + " times (" + this.removed
+            + " gums removed), " + this.improvements + " 2-opt moves, " + this.size + " gums left";
+    }
+}
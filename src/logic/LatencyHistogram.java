@@ -0,0 +1,195 @@
+package logic;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Histogramme des temps de decision de l'IA, en nanosecondes.
+ * Les valeurs sont rangees dans des classes logarithmiques : chaque puissance de 2 est coupee en SOUS_CLASSES
+ * classes de meme largeur, si bien qu'un centile est connu a 1/SOUS_CLASSES pres (6%) quelle que soit la valeur.
+ * Pour chaque classe on garde aussi la taille moyenne et maximale de la croyance au moment du coup,
+ * pour savoir a quelles croyances correspondent les pics.
+ * Enregistrer un temps ne fait aucune allocation.
+ *
+ * @inv getCount() >= 0
+ */
+public class LatencyHistogram {
+
+	private static final int BITS_SOUS_CLASSES = 4;
+	private static final int SOUS_CLASSES = 1 << BITS_SOUS_CLASSES;
+	/** Nombre de classes : les valeurs < SOUS_CLASSES ont chacune leur classe, puis SOUS_CLASSES classes par puissance de 2 */
+	private static final int NB_CLASSES = (64 - BITS_SOUS_CLASSES) * SOUS_CLASSES;
+
+	private final long[] counts;
+	private final long[] sommeCroyances;//somme des tailles de croyance des coups de chaque classe
+	private final int[] maxCroyances;//plus grande taille de croyance des coups de chaque classe
+	private long count;
+	private long somme;//en ns
+	private long max;//en ns
+	private int croyanceDuMax;//taille de la croyance du coup le plus long
+
+	/**
+	 * cree un histogramme vide
+	 */
+	public LatencyHistogram() {
+		this.counts = new long[NB_CLASSES];
+		this.sommeCroyances = new long[NB_CLASSES];
+		this.maxCroyances = new int[NB_CLASSES];
+	}
+
+	/**
+	 * enregistre le temps d'un coup
+	 * @param nanos le temps de decision en ns
+	 * @param croyance la taille de la croyance sur laquelle l'IA a decide (voir BeliefState.getNbrOfGhostPositions)
+	 */
+	public void record(long nanos, int croyance) {
+		nanos = Math.max(0, nanos);
+		int classe = classe(nanos);
+		this.counts[classe]++;
+		this.sommeCroyances[classe] += croyance;
+		this.maxCroyances[classe] = Math.max(this.maxCroyances[classe], croyance);
+		this.count++;
+		this.somme += nanos;
+		if (nanos >= this.max) {
+			this.max = nanos;
+			this.croyanceDuMax = croyance;
+		}
+	}
+
+	/**
+	 * ajoute les coups d'un autre histogramme a celui-ci
+	 * @param autre l'histogramme a ajouter
+	 */
+	public void add(LatencyHistogram autre) {
+		for (int classe = 0; classe < NB_CLASSES; classe++) {
+			this.counts[classe] += autre.counts[classe];
+			this.sommeCroyances[classe] += autre.sommeCroyances[classe];
+			this.maxCroyances[classe] = Math.max(this.maxCroyances[classe], autre.maxCroyances[classe]);
+		}
+		this.count += autre.count;
+		this.somme += autre.somme;
+		if (autre.max >= this.max) {
+			this.max = autre.max;
+			this.croyanceDuMax = autre.croyanceDuMax;
+		}
+	}
+
+	/**
+	 * vide l'histogramme
+	 */
+	public void reset() {
+		Arrays.fill(this.counts, 0);
+		Arrays.fill(this.sommeCroyances, 0);
+		Arrays.fill(this.maxCroyances, 0);
+		this.count = 0;
+		this.somme = 0;
+		this.max = 0;
+		this.croyanceDuMax = 0;
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return le temps moyen en ns, 0 sans coup
+	 */
+	public double getMean() {
+		return this.count == 0 ? 0 : (double)this.somme / this.count;
+	}
+
+	/**
+	 * @return le temps le plus long en ns
+	 */
+	public long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * @return la taille de la croyance du coup le plus long
+	 */
+	public int getCroyanceDuMax() {
+		return this.croyanceDuMax;
+	}
+
+	/**
+	 * donne un centile
+	 * @param p le centile voulu, entre 0 et 100
+	 * @return la borne superieure de la classe du centile en ns (au plus getMax()), 0 sans coup
+	 */
+	public long percentile(double p) {
+		if (this.count == 0) {
+			return 0;
+		}
+		long rang = Math.max(1, (long)Math.ceil(p / 100 * this.count));
+		long cumul = 0;
+		for (int classe = 0; classe < NB_CLASSES; classe++) {
+			cumul += this.counts[classe];
+			if (cumul >= rang) {
+				return Math.min(this.max, borneSup(classe));
+			}
+		}
+		return this.max;
+	}
+
+	/**
+	 * @return une ligne avec le nombre de coups, la moyenne, les centiles et le max en ms
+	 */
+	public String summary() {
+		return String.format(Locale.ROOT, "%d coups, moyenne %.3fms, p50 %.3fms, p90 %.3fms, p99 %.3fms, p99.9 %.3fms, max %.3fms (croyance %d)",
+				this.count, this.getMean() / 1e6, this.percentile(50) / 1e6, this.percentile(90) / 1e6, this.percentile(99) / 1e6,
+				this.percentile(99.9) / 1e6, this.max / 1e6, this.croyanceDuMax);
+	}
+
+	/**
+	 * ecrit les classes non vides au format csv :
+	 * nom;debut (ns);fin (ns);coups;croyance moyenne;croyance max
+	 * @param out le flux ou ecrire
+	 * @param nom le nom de l'histogramme (le niveau, ou "partie")
+	 */
+	public void writeCsv(PrintStream out, String nom) {
+		for (int classe = 0; classe < NB_CLASSES; classe++) {
+			if (this.counts[classe] > 0) {
+				out.println(String.format(Locale.ROOT, "%s;%d;%d;%d;%.1f;%d", nom, borneInf(classe), borneSup(classe), this.counts[classe],
+						(double)this.sommeCroyances[classe] / this.counts[classe], this.maxCroyances[classe]));
+			}
+		}
+	}
+
+	/**
+	 * @return l'entete des lignes ecrites par writeCsv
+	 */
+	public static String csvHeader() {
+		return "nom;debut ns;fin ns;coups;croyance moyenne;croyance max";
+	}
+
+	private static int classe(long nanos) {
+		if (nanos < SOUS_CLASSES) {
+			return (int)nanos;
+		}
+		int exposant = 63 - Long.numberOfLeadingZeros(nanos);//>= BITS_SOUS_CLASSES
+		int sousClasse = (int)(nanos >>> (exposant - BITS_SOUS_CLASSES)) & (SOUS_CLASSES - 1);
+		return (exposant - BITS_SOUS_CLASSES + 1) * SOUS_CLASSES + sousClasse;
+	}
+
+	private static long borneInf(int classe) {
+		if (classe < SOUS_CLASSES) {
+			return classe;
+		}
+		int exposant = classe / SOUS_CLASSES + BITS_SOUS_CLASSES - 1;
+		return (1L << exposant) + ((long)(classe % SOUS_CLASSES) << (exposant - BITS_SOUS_CLASSES));
+	}
+
+	private static long borneSup(int classe) {
+		if (classe < SOUS_CLASSES) {
+			return classe;
+		}
+		int exposant = classe / SOUS_CLASSES + BITS_SOUS_CLASSES - 1;
+		return borneInf(classe) + (1L << (exposant - BITS_SOUS_CLASSES)) - 1;
+	}
+
+	protected void invariant() {
+		assert this.count >= 0 : "Invariant violé : nombre de coups négatif";
+	}
+
+}
@@ -1,5 +1,7 @@
 package logic;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
 import data.*;
 import view.*;
 
@@ -12,10 +14,23 @@ public class PacManLauncher {
 	public static final String DOWN = "DOWN";
 	public static final String LEFT = "LEFT";
 	public static final String RIGHT = "RIGHT";
-	private static final int NBR_LVL = 3; // TODO : compter le nbr de fichier .map ??
-	private double meanTimeResolution;
 	private long nbrSamples;
 	private static long nbrMaxSample = 20000;
+	private LatencyHistogram gameLatencies;//temps de decision de l'IA sur toute la partie
+	private ArrayList<LatencyHistogram> levelLatencies;//temps de decision de l'IA sur chaque niveau commencé
+	private long nbrMoves;//nombre d'actions de pacman (IA, joueur ou replay)
+	private ReplayRecorder recorder;//journal de la partie en cours, null si elle n'est pas enregistrée
+	private ReplayReader replay;//journal de la partie rejouée, null si la partie n'est pas rejouée
+	private SnapshotCorpus corpus;//corpus des croyances capturées, null si on ne capture pas
+	private int captureEvery;//capture la croyance d'un coup de l'IA sur captureEvery
+	private int particles;//nombre de particules par fantome du suivi des fantomes, 0 sans suivi
+	private long seed;//graine de la partie
+	private long pauseAt;//coup sur lequel mettre le replay en pause, -1 pour aucun
+	private int profileRuns;//nombre d'appels a AI.findNextMove pendant la pause
+	private long tickPeriod;//duree d'un tick de jeu en ns, 0 pour aller aussi vite que possible
+	private long nextTick;//date (System.nanoTime) de la fin du tick en cours
+	private StringBuilder levels;//suite des niveaux joués, comme "1-2-3"
+	private int nbrLevels;//nombre de niveaux commencés
 	
 	/**
 	 * initialize au lancement le jeu pacman
@@ -28,32 +43,204 @@ public class PacManLauncher {
 		this.fillGhost();
 		this.pacman = new Pacman(this.maps.getTailleCase(), this.maps.getPMX(), this.maps.getPMY());
 		this.pacman.setMap(this.maps);
-		this.meanTimeResolution = 0;
 		this.nbrSamples = 0;
-		
+		this.gameLatencies = new LatencyHistogram();
+		this.levelLatencies = new ArrayList<LatencyHistogram>();
+		this.nbrMoves = 0;
+		this.pauseAt = -1;
+		this.profileRuns = 10;
+		this.tickPeriod = 1000000000L / 8;
+		this.levels = new StringBuilder();
 	}
 
+	/**
+	 * lance une partie
+	 * options :
+	 *   --seed n            graine du generateur aleatoire de la partie
+	 *   --record fichier    enregistre la partie dans un journal binaire
+	 *   --record-latency    enregistre aussi le temps de decision de chaque action
+	 *   --replay fichier    rejoue une partie enregistrée a pleine vitesse
+	 *   --pause-at n        met le replay en pause au coup n pour relancer AI.findNextMove (sous un profileur)
+	 *   --profile-runs n    nombre d'appels a AI.findNextMove pendant la pause
+	 *   --tps n             nombre de ticks de jeu par seconde (8 par defaut, 0 pour ne pas limiter)
+	 *   --headless          joue sans fenetre, aussi vite que possible (les maps peuvent alors etre plus grandes que la fenetre)
+	 *   --latency-csv f     ecrit les histogrammes des temps de decision (par niveau et de la partie) dans un fichier csv
+	 *   --capture f         capture les croyances de pacman avant les coups de l'IA dans un corpus (voir SnapshotCorpus)
+	 *   --capture-every k   ne capture qu'un coup de l'IA sur k (1 par defaut)
+	 *   --max-states n      l'IA ne garde que les n etats les plus dangereux de chaque resultat de sa recherche (pas de limite par defaut)
+	 *   --max-ghost-positions n  l'IA ne garde que les n positions de chaque fantome les plus proches de Pacman (pas de limite par defaut)
+	 *   --merge             fusionne les croyances en double des resultats de la recherche et de la croyance suivie en jeu
+	 *                       (voir BeliefState.merge), aucune n'a ete fusionnee sur les maps fournies
+	 *   --depth n           profondeur de la recherche de l'IA (3 par defaut)
+	 *   --expectimax p      les noeuds ET de la recherche font la moyenne de leurs croyances ponderees par leur probabilite
+	 *                       au lieu de prendre la pire, et n'explorent pas celles de probabilite inferieure a p
+	 *   --macro             sous la racine, une action de l'IA suit son couloir jusqu'au prochain carrefour (voir JunctionGraph),
+	 *                       la profondeur compte alors des decisions et non des cases
+	 *   --tour              experimental : parmi les coups qui rapprochent de la gomme la plus proche, l'IA prefere celui qui suit
+	 *                       une tournee de toutes les gommes (voir GumTour)
+	 *   --no-fast-path      l'IA cherche toujours, meme quand aucun fantome ne peut atteindre Pacman (voir GumRoutePlanner)
+	 *   --no-cones          l'IA explore toutes les croyances d'un resultat meme quand aucun fantome ne peut atteindre Pacman (voir ReachabilityCones)
+	 *   --no-symmetry       l'IA ne reprend pas les calculs de l'image miroir d'une croyance sur un niveau symetrique
+	 *                       (voir BeliefState.mirror et AI.visitsRead)
+	 *   --particles n       suit aussi chaque fantome avec n particules (voir ParticleFilter), l'IA evite les cases ou un fantome est probablement
+	 *   --search-stats f    compte ce que fait la recherche de l'IA a chaque coup et l'ecrit dans un fichier (json si f finit par .json, csv sinon)
+	 */
 	public static void main (String[] args) {
+		long seed = System.nanoTime();
+		String recordFile = null, replayFile = null, latencyFile = null, searchStatsFile = null, captureFile = null;
+		int captureEvery = 1;
+		int maxStates = 0, maxGhostPositions = 0;
+		int particles = 0;
+		boolean recordLatency = false;
+		long pauseAt = -1;
+		int profileRuns = 10;
+		int tps = 8;
+		for (int a = 0; a < args.length; a++) {
+			switch (args[a]) {
+			case "--seed": seed = Long.parseLong(args[++a]); break;
+			case "--record": recordFile = args[++a]; break;
+			case "--record-latency": recordLatency = true; break;
+			case "--replay": replayFile = args[++a]; break;
+			case "--pause-at": pauseAt = Long.parseLong(args[++a]); break;
+			case "--profile-runs": profileRuns = Integer.parseInt(args[++a]); break;
+			case "--tps": tps = Integer.parseInt(args[++a]); break;
+			case "--headless": Canvas.setHeadless(true); break;
+			case "--latency-csv": latencyFile = args[++a]; break;
+			case "--capture": captureFile = args[++a]; break;
+			case "--capture-every": captureEvery = Integer.parseInt(args[++a]); break;
+			case "--max-states": maxStates = Integer.parseInt(args[++a]); break;
+			case "--max-ghost-positions": maxGhostPositions = Integer.parseInt(args[++a]); break;
+			case "--merge": AI.mergeBeliefs = true; break;
+			case "--depth": AI.globalDepth = Integer.parseInt(args[++a]); break;
+			case "--expectimax": AI.expectimaxThreshold = Double.parseDouble(args[++a]); break;
+			case "--no-cones": AI.useCones = false; break;
+			case "--no-symmetry": AI.useSymmetry = false; break;
+			case "--no-fast-path": AI.useFastPath = false; break;
+			case "--tour": AI.useTour = true; break;
+			case "--macro": AI.macroActions = true; break;
+			case "--particles": particles = Integer.parseInt(args[++a]); break;
+			case "--search-stats": searchStatsFile = args[++a]; System.setProperty(SearchStats.PROPERTY, "true"); break;
+			default: System.out.println("Option inconnue : " + args[a]);
+			}
+		}
+		ReplayRecorder recorder = null;
+		ReplayReader replay = null;
+		try {
+			if (replayFile != null) {
+				replay = new ReplayReader(replayFile);
+				seed = replay.getSeed();
+			}
+			if (recordFile != null) {
+				recorder = new ReplayRecorder(recordFile, seed, recordLatency);
+			}
+		}
+		catch (IOException exception) {
+			System.out.println("Erreur lors de l'ouverture du replay : " + exception.getMessage());
+			return;
+		}
+		Ghost.setSeed(seed);
+		AI.rand.setSeed(seed);
+		BeliefBudget.setBudget(maxStates, maxGhostPositions);
+		if (replay != null || Canvas.isHeadless()) {
+			tps = 0;
+		}
+
 		//Canvas c = Canvas.getCanvas();
 		PacManLauncher pml = new PacManLauncher();
+		pml.recorder = recorder;
+		pml.replay = replay;
+		pml.pauseAt = pauseAt;
+		pml.profileRuns = profileRuns;
+		pml.seed = seed;
+		pml.captureEvery = Math.max(1, captureEvery);
+		pml.particles = particles;
+		if (captureFile != null) {
+			try {
+				pml.corpus = SnapshotCorpus.create(captureFile);
+			}
+			catch (IOException exception) {
+				System.out.println("Erreur lors de la création du corpus : " + exception.getMessage());
+				return;
+			}
+		}
+		pml.tickPeriod = tps > 0 ? 1000000000L / tps : 0;
+		pml.traceLevel(1);
 		pml.draw();
 		pml.animate(); // Le lvl 1
 
 		int i = 2;
-		while ((pml.getPacman().getLife() > 0) && (pml.nbrSamples < PacManLauncher.nbrMaxSample)) {
+		while ((pml.getPacman().getLife() > 0) && (pml.nbrSamples < PacManLauncher.nbrMaxSample) && !pml.isReplayOver()) {
 			pml.upLvl(i);
 			pml.draw();
 			pml.animate();
 			i++;
-			if (i > PacManLauncher.NBR_LVL) {
+			if (i > LevelCatalog.getCatalog().size()) {
 				i=1;
 			}
 		}
 
-		if ((Integer.valueOf(Score.getScore()) < pml.getPacman().getScore()) && (pml.nbrSamples < PacManLauncher.nbrMaxSample)) {
-			Score.setScore(pml.getPacman().getScore()+"");
+		if (replay == null && (pml.nbrSamples < PacManLauncher.nbrMaxSample)) {
+			Score.submit(pml.getPacman().getScore());
+		}
+		Score.flush();
+		if (recorder != null) {
+			recorder.close();
+		}
+		if (pml.corpus != null) {
+			try {
+				pml.corpus.close();
+			}
+			catch (IOException exception) {
+				System.out.println("Erreur lors de l'ecriture du corpus : " + exception.getMessage());
+			}
+		}
+		if (replay == null) {
+			RunHistory.getHistory().add(new RunHistory.Run(System.currentTimeMillis(), seed, pml.levels.toString(),
+					(Canvas.isHeadless() ? "headless" : "tps=" + tps) + (BeliefBudget.isEnabled() ? " budget=" + maxStates + "/" + maxGhostPositions : "")
+					+ (AI.globalDepth != 3 ? " depth=" + AI.globalDepth : "") + (AI.expectimaxThreshold >= 0 ? " expectimax=" + AI.expectimaxThreshold : "")
+					+ (AI.useCones ? "" : " no-cones") + (AI.useFastPath ? "" : " no-fast-path")
+					+ (AI.useTour ? " tour" : "") + (AI.macroActions ? " macro" : "") + (AI.mergeBeliefs ? " merge" : "") + (AI.useSymmetry ? "" : " no-symmetry"), pml.getPacman().getScore(), pml.nbrLevels - 1,
+					(int)pml.nbrSamples, pml.gameLatencies.getMean() / 1000000.0, pml.gameLatencies.percentile(99) / 1000000.0));
+		}
+		String[] levelNames = pml.levels.toString().split("-");
+		for (int l = 0; l < pml.levelLatencies.size(); l++) {
+			System.out.println("niveau " + (l + 1) + " (map " + levelNames[l] + ") : " + pml.levelLatencies.get(l).summary());
+		}
+		System.out.println("partie : " + pml.gameLatencies.summary());
+		if (latencyFile != null) {
+			try (java.io.PrintStream out = new java.io.PrintStream(latencyFile)) {
+				out.println(LatencyHistogram.csvHeader());
+				for (int l = 0; l < pml.levelLatencies.size(); l++) {
+					pml.levelLatencies.get(l).writeCsv(out, "niveau " + (l + 1) + " map " + levelNames[l]);
+				}
+				pml.gameLatencies.writeCsv(out, "partie");
+			}
+			catch (IOException exception) {
+				System.out.println("Erreur lors de l'ecriture des temps de decision : " + exception.getMessage());
+			}
+		}
+		if (AI.ghostTracker != null) {
+			System.out.println(AI.ghostTracker.summary());
+		}
+		if (AI.gumTour != null) {
+			System.out.println(AI.gumTour.summary());
+		}
+		if (AI.useFastPath) {
+			System.out.println(GumRoutePlanner.summary());
+		}
+		if (BeliefBudget.isEnabled()) {
+			System.out.println(BeliefBudget.summary());
 		}
-		System.out.println("mean time resolution:" + pml.meanTimeResolution + "ms\nnbr of actions: " + pml.nbrSamples);
+		if (searchStatsFile != null) {
+			SearchStats.printSummary(System.out);
+			try {
+				SearchStats.write(searchStatsFile);
+			}
+			catch (IOException exception) {
+				System.out.println("Erreur lors de l'ecriture des statistiques de recherche : " + exception.getMessage());
+			}
+		}
+		System.out.println("mean time resolution:" + pml.gameLatencies.getMean() / 1000000.0 + "ms (max " + (pml.gameLatencies.getMax() / 1000000.0) + "ms)\nnbr of actions: " + pml.nbrSamples);
 		System.out.println("~~~END~~~");
 	}
 
@@ -62,6 +249,7 @@ public class PacManLauncher {
 	 * @param int lvl le niveau souhaité
 	 */
 	public void upLvl (int lvl) {
+		this.traceLevel(lvl);
 		this.maps = new data.Map(lvl, this);
 		this.fillGhost();
 		this.pacman.setLocation(this.maps.getPMX(), this.maps.getPMY());
@@ -69,6 +257,50 @@ public class PacManLauncher {
 		this.pacman.setMap(this.maps);
 	}
 
+	/**
+	 * enregistre le debut d'un niveau dans le journal de la partie
+	 * ou verifie que le replay commence bien ce niveau
+	 * @param int lvl le niveau qui commence
+	 */
+	private void traceLevel (int lvl) {
+		this.levels.append(this.nbrLevels == 0 ? "" : "-").append(lvl);
+		this.nbrLevels++;
+		this.levelLatencies.add(new LatencyHistogram());
+		if (this.recorder != null) {
+			this.recorder.recordLevel(lvl);
+		}
+		if (this.replay != null) {
+			int mapNumber = this.replay.nextLevel();
+			if (mapNumber != -1 && mapNumber != lvl) {
+				throw new IllegalStateException("Replay désynchronisé : map " + mapNumber + " enregistrée a la place de " + lvl);
+			}
+		}
+	}
+
+	/**
+	 * retourne le journal de la partie en cours
+	 * @return le journal, null si la partie n'est pas enregistrée
+	 */
+	public ReplayRecorder getRecorder () {
+		return this.recorder;
+	}
+
+	/**
+	 * retourne le journal de la partie rejouée
+	 * @return le journal, null si la partie n'est pas rejouée
+	 */
+	public ReplayReader getReplay () {
+		return this.replay;
+	}
+
+	/**
+	 * indique si la partie rejouée est terminée
+	 * @return vrai si tout le journal a été rejoué
+	 */
+	public boolean isReplayOver () {
+		return this.replay != null && !this.replay.hasNext();
+	}
+
 	/**
 	 * creer tous les fantomes necessaires
 	 * en fonction de l'objet this.map
@@ -98,6 +330,9 @@ public class PacManLauncher {
 	 * d'un niveau
 	 */
 	public void draw () {
+		if (Canvas.isHeadless()) {
+			return;
+		}
 		this.maps.draw();
 		this.pacman.draw();
 		for (Ghost g : this.ghost) {
@@ -123,10 +358,13 @@ public class PacManLauncher {
 	 * (sans redessiner toute la map)
 	 */
 	public void animate () {
-		Canvas c = Canvas.getCanvas();
-		c.resetMove();
+		Canvas c = Canvas.isHeadless() ? null : Canvas.getCanvas();
+		if (c != null) {
+			c.resetMove();
+		}
 		boolean isInit = false;
 		boolean[] isDead = new boolean[this.ghost.length];
+		this.nextTick = System.nanoTime();
 		while ((this.maps.getNbGom() > 0) && (this.pacman.getLife() > 0) && (this.nbrSamples < PacManLauncher.nbrMaxSample)) {
 			/*System.out.println(this.maps.getState().toString());
 			System.out.println("Actual position: P(" + this.pacman.getY() / this.maps.getTailleCase()  + ", " + this.getPacman().getX() / this.maps.getTailleCase() + ") " + this.getPacman().getScore());
@@ -167,29 +405,52 @@ public class PacManLauncher {
 				System.out.println("Problem");
 			if(this.maps.getState().getNbrOfSuperGommes() != this.maps.getVisibleState().getFirst().getNbrOfSuperGommes())
 				System.out.println("Problem");*/
-			if(Canvas.getCanvas().isAIdriven()) {//c'est l'IA qui joue
-				long elapsedTime = System.currentTimeMillis();
+			String toward;
+			long latency = 0;
+			if (this.replay != null) {//c'est le journal qui joue
+				if (this.nbrMoves == this.pauseAt) {
+					this.profileMove();
+				}
+				AI.recordVisit(this.maps.getVisibleBeliefState().get(0).getPacmanPos());
+				toward = this.replay.nextPacmanMove();
+				if (toward == null) {
+					break;
+				}
+			}
+			else if(c == null || c.isAIdriven()) {//c'est l'IA qui joue
 				if(this.maps.getVisibleBeliefState().size() != 1) {
 					System.out.println("Problem");
 				}
-				isInit = this.pacman.move(AI.findNextMove(this.maps.getVisibleBeliefState().get(0)));//l'IA choisit un mouvement est Pacman commence a se deplacer
-				elapsedTime = System.currentTimeMillis() - elapsedTime;
+				BeliefState beliefState = this.maps.getVisibleBeliefState().get(0);
+				if (this.corpus != null && this.nbrSamples % this.captureEvery == 0) {
+					this.capture();
+				}
+				latency = System.nanoTime();
+				toward = AI.findNextMove(beliefState);//l'IA choisit un mouvement
+				latency = System.nanoTime() - latency;
+				int beliefSize = beliefState.getNbrOfGhostPositions();
+				this.gameLatencies.record(latency, beliefSize);
+				this.levelLatencies.get(this.levelLatencies.size() - 1).record(latency, beliefSize);
 				this.nbrSamples++;
-				this.meanTimeResolution = ((double)elapsedTime) / this.nbrSamples + (((double)(this.nbrSamples - 1)) / this.nbrSamples) * this.meanTimeResolution;
 			}
 			else {
 				if (c.isUpPressed()) {
-					isInit = this.pacman.move(PacManLauncher.UP);
+					toward = PacManLauncher.UP;
 				} else if (c.isDownPressed()) {
-					isInit = this.pacman.move(PacManLauncher.DOWN);
+					toward = PacManLauncher.DOWN;
 				} else if (c.isLeftPressed()) {
-					isInit = this.pacman.move(PacManLauncher.LEFT);
+					toward = PacManLauncher.LEFT;
 				} else if (c.isRightPressed()) {
-					isInit = this.pacman.move(PacManLauncher.RIGHT);
+					toward = PacManLauncher.RIGHT;
 				} else {
-					isInit = this.pacman.move(this.pacman.getPreviousMove());
+					toward = this.pacman.getPreviousMove();
 				}
 			}
+			if (this.recorder != null) {
+				this.recorder.recordPacman(toward, latency);
+			}
+			this.nbrMoves++;
+			isInit = this.pacman.move(toward);//Pacman commence a se deplacer
 			if(isInit) {
 				boolean colisionSolved = false;
 				for (Ghost g : this.ghost) {
@@ -222,23 +483,125 @@ public class PacManLauncher {
 					}
 				}
 			}
-			Canvas.getCanvas().redraw(this.pacman.getScore(), this.pacman.getLife(), Score.getScore());
+			this.endTick();
 			while(this.getPacman().getX() % this.maps.getTailleCase() != 0 || this.getPacman().getY() % this.maps.getTailleCase() != 0 || this.getPacman().getCount() % (this.maps.getTailleCase() / Pacman.SPEED_PACMAN) != 0) {
 				this.pacman.move(this.pacman.getPreviousMove());
 				for (Ghost g : this.ghost) {
 					g.move(false);
 				}
-				Canvas.getCanvas().redraw(this.pacman.getScore(), this.pacman.getLife(), Score.getScore());
+				this.endTick();
 			}
 			this.collisionGhost(isInit, isDead);
 			
+			Position[] posGhosts = new Position[this.ghost.length];
 			for(int i = 0; i < this.ghost.length; i++) {
-				BeliefState.filter(this.maps.getVisibleBeliefState(), i, this.maps.getBeliefState().getPGhost(i));
+				posGhosts[i] = this.maps.getBeliefState().getPGhost(i);
+			}
+			BeliefState.filter(this.maps.getVisibleBeliefState(), posGhosts);
+			if (this.particles > 0) {
+				this.trackGhosts(isInit, isDead);
 			}
 			
 		}
 	}
 
+	/**
+	 * met a jour le suivi des fantomes par particules apres un deplacement de Pacman
+	 * (un nouveau suivi est cree a chaque niveau, les fantomes renvoyes a leur depart y sont replaces)
+	 * @param isInit vrai si Pacman est mort et que tout le monde est revenu au depart
+	 * @param isDead pour chaque fantome, vrai s'il a ete mange
+	 */
+	private void trackGhosts(boolean isInit, boolean[] isDead) {
+		BeliefState state = this.maps.getBeliefState();
+		if (AI.ghostTracker == null || AI.ghostTracker.getLevel() != BeliefState.getLevel()) {
+			if (AI.ghostTracker != null) {
+				System.out.println(AI.ghostTracker.summary());
+			}
+			// the particles start on the starting cells of the ghosts, as after a death of Pacman, and follow this first move
+			AI.ghostTracker = new ParticleFilter(new BeliefState(state, true), this.particles, this.seed * 31 + this.nbrSamples);
+		}
+		boolean[] scared = new boolean[this.ghost.length];
+		for (int i = 0; i < this.ghost.length; i++) {
+			if (isInit || isDead[i]) {
+				AI.ghostTracker.reset(i, state.getPGhost(i));
+			}
+			scared[i] = this.ghost[i].getPeur() > 0;
+		}
+		AI.ghostTracker.update(state, scared);
+	}
+
+	/**
+	 * capture les croyances de pacman avant le coup de l'IA
+	 * (la graine donnée a l'IA quand le coup sera rejoué dépend de la graine de la partie et du coup)
+	 */
+	private void capture () {
+		try {
+			this.corpus.capture("map" + this.maps.getLevel().getMapNumber(), this.nbrSamples, this.seed * 31 + this.nbrSamples, this.maps.getVisibleBeliefState());
+		}
+		catch (IOException exception) {
+			System.out.println("Erreur lors de l'ecriture du corpus : " + exception.getMessage());
+			this.corpus = null;
+		}
+	}
+
+	/**
+	 * termine un tick de jeu : publie l'image du tick pour le thread d'affichage
+	 * puis attend le debut du tick suivant (pas de temps fixe)
+	 * si le tick a pris trop de temps (IA lente) les ticks perdus ne sont pas rattrapés
+	 */
+	private void endTick () {
+		if (!Canvas.isHeadless()) {
+			Canvas.getCanvas().publishFrame(this.pacman.getScore(), this.pacman.getLife(), Score.getScore());
+		}
+		if (this.tickPeriod > 0) {
+			this.nextTick += this.tickPeriod;
+			long delay = this.nextTick - System.nanoTime();
+			if (delay > 0) {
+				LockSupport.parkNanos(delay);
+			}
+			else if (-delay > this.tickPeriod) {
+				this.nextTick = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * met la partie rejouée en pause sur le coup courant
+	 * puis relance plusieurs fois AI.findNextMove sur la croyance de ce coup (pour pouvoir y attacher un profileur)
+	 * les caches de l'IA sont restaurés avant chaque appel pour que les appels ne s'influencent pas
+	 */
+	private void profileMove () {
+		BeliefState beliefState = this.maps.getVisibleBeliefState().get(0);
+		System.out.println("Pause au coup " + this.nbrMoves + " : attacher le profileur puis appuyer sur Entree");
+		try {
+			System.in.read();
+		}
+		catch (IOException exception) {
+			// on continue sans attendre
+		}
+		TreeMap<Position, Integer> alreadyBeenHere = AI.alreadyBeenHere;
+		TreeSet<Pair> alreadyBeenHerePairs = AI.alreadyBeenHerePairs;
+		TreeMap<BeliefState, HashMap<String, Integer>> visitedBeliefStates = AI.visitedBeliefStates;
+		TreeMap<BeliefState, Integer> nbOfMeets = AI.nbOfMeets;
+		TreeMap<BeliefState, BitSet> visitsOfSearch = AI.visitsOfSearch;
+		for (int run = 0; run < this.profileRuns; run++) {
+			AI.alreadyBeenHere = new TreeMap<Position, Integer>(alreadyBeenHere);
+			AI.alreadyBeenHerePairs = new TreeSet<Pair>(alreadyBeenHerePairs);
+			AI.visitedBeliefStates = new TreeMap<BeliefState, HashMap<String, Integer>>(visitedBeliefStates);
+			AI.nbOfMeets = new TreeMap<BeliefState, Integer>(nbOfMeets);
+			AI.visitsOfSearch = new TreeMap<BeliefState, BitSet>(visitsOfSearch);
+			long elapsedTime = System.nanoTime();
+			String move = AI.findNextMove(beliefState);
+			elapsedTime = System.nanoTime() - elapsedTime;
+			System.out.println("run " + run + " : " + move + " en " + (elapsedTime / 1000) + "us");
+		}
+		AI.alreadyBeenHere = alreadyBeenHere;
+		AI.alreadyBeenHerePairs = alreadyBeenHerePairs;
+		AI.visitedBeliefStates = visitedBeliefStates;
+		AI.nbOfMeets = nbOfMeets;
+		AI.visitsOfSearch = visitsOfSearch;
+	}
+
 	/**
 	 * verifie s'il existe une colision entre pacman et l'un des fantome
 	 * si oui alors pacman perd une vie
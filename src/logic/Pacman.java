@@ -1,7 +1,7 @@
 package logic;
 import java.util.ArrayList;
 
-//import data.*;
+import data.Map;
 import view.*;
 
 /**
@@ -46,6 +46,7 @@ public class Pacman extends Entite {
 	 */
 	public Pacman(int size, int x, int y) {
 		this.pac = new ArcCircle(size, x, y, PACMAN_COLOR, 0, 360);
+		this.pac.setLayer(SceneGraph.PACMAN);
 		//initialize the direction of pacman
 		this.dernierePosition = PacManLauncher.LEFT;
 		this.ouverture = Pacman.OUVERTURE_MIN;
@@ -162,7 +163,7 @@ public class Pacman extends Entite {
 			case PacManLauncher.LEFT: toInit = this.map.getBeliefState().move(0, -1, 'L'); for(BeliefState state: visibleBeliefState) { newVisibleBeliefState.addAll(state.extendsBeliefState(PacManLauncher.LEFT).getBeliefStates());} break;
 			case PacManLauncher.RIGHT: toInit = this.map.getBeliefState().move(0, 1, 'R'); for(BeliefState state: visibleBeliefState) { newVisibleBeliefState.addAll(state.extendsBeliefState(PacManLauncher.RIGHT).getBeliefStates());} break;
 			}
-			this.map.setVisibleBeliefState(newVisibleBeliefState);
+			this.map.setVisibleBeliefState(AI.mergeBeliefs ? BeliefState.merge(newVisibleBeliefState) : newVisibleBeliefState);//the results of different states can overlap
 		}
 		count++;
 		if(this.isMoving) {
@@ -192,7 +193,6 @@ public class Pacman extends Entite {
 	 */
 	private boolean testMove (String toward) {
 		boolean haveMoved = false;
-		Figure[][] map = this.map.getMap();
 		
 		int[] colLign = this.getColLign();
 		int colonne = colLign[0];
@@ -201,32 +201,16 @@ public class Pacman extends Entite {
 		
 		switch (toward) {
 		case PacManLauncher.UP :
-			Figure fup = map[ligne-1][colonne];
-			if (fup.getClass().getName().compareTo("view.Wall") != 0) {
-				haveMoved = true;
-			} else {
-			}
+			haveMoved = !this.map.isWall(ligne-1, colonne);
 			break;
 		case PacManLauncher.DOWN :
-			Figure fdown = map[ligne+1][colonne];
-			if (fdown.getClass().getName().compareTo("view.Wall") != 0) {
-				haveMoved = true;
-			} else {
-			}
+			haveMoved = !this.map.isWall(ligne+1, colonne);
 			break;
 		case PacManLauncher.LEFT :
-			Figure fleft = map[ligne][colonne-1];
-			if (fleft.getClass().getName().compareTo("view.Wall") != 0) {
-				haveMoved = true;
-			} else {
-			}
+			haveMoved = !this.map.isWall(ligne, colonne-1);
 			break;
 		case PacManLauncher.RIGHT :
-			Figure fright = map[ligne][colonne+1];
-			if (fright.getClass().getName().compareTo("view.Wall") != 0) {
-				haveMoved = true;
-			} else {
-			}
+			haveMoved = !this.map.isWall(ligne, colonne+1);
 			break;
 		}
 
@@ -273,30 +257,28 @@ public class Pacman extends Entite {
 
 
 	/**
-	 * definie les actions que l'entite va devoir realiser avec un objet de type gomme
+	 * definie les actions que l'entite va devoir realiser avec une case contenant une gomme
 	 * qui est en position (i,j) sur la Map
-	 * @param Figure[][] map la carte ayant les objets de type gomme
-	 * @param int        i   position colonne pour la Map
-	 * @param int        j   position ligne dans la Map
-	 * @pre (map[i][j] instanceof Gomme) && (i>=0 && j>=0)
+	 * @param int        i   position ligne dans la Map
+	 * @param int        j   position colonne dans la Map
+	 * @pre (i>=0 && j>=0)
 	 */
-	protected void actionWithGom (Figure[][] map, int i, int j) {
-		Figure f = map[i][j];
-		if (f instanceof Gomme) {
-			Gomme tmp = (Gomme)f;
-			if (tmp.getGomme() != null) {
+	protected void actionWithGom (int i, int j) {
+		byte tile = this.map.getTile(i, j);
+		if (tile == Map.TILE_GOMME || tile == Map.TILE_SUPER_GOMME) {
+			if (this.map.getMap() != null) {//sans affichage il n'y a pas de figure
+				Gomme tmp = (Gomme)this.map.getMap()[i][j];//la figure de la case, uniquement pour le dessin
 				tmp.setGomme(null);//plus de gomme
 				tmp.draw();
-				map[i][j] = tmp;
-				this.map.pickGom();
-				this.upScoreGomme();
-				if (tmp.getSupra()) {
-					// Mettre tous les fantome en peur
-					this.supra = true;
-				}
-			} else {
-				//deja pas de gomme donc rien a faire
 			}
+			this.map.pickGom(i, j);
+			this.upScoreGomme();
+			if (tile == Map.TILE_SUPER_GOMME) {
+				// Mettre tous les fantome en peur
+				this.supra = true;
+			}
+		} else {
+			//deja pas de gomme donc rien a faire
 		}
 	}
 
@@ -312,8 +294,8 @@ public class Pacman extends Entite {
 	/**
 	 *	pacman peut agir sur les mur et les gommes
 	 */
-	public boolean typeCaseToCheck (Figure f) {
-		return (f instanceof Wall) || (f instanceof Gomme);
+	public boolean typeCaseToCheck (byte tile) {
+		return tile != Map.TILE_VIDE;
 	}
 
 	/**
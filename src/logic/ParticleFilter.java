@@ -0,0 +1,286 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+import data.CompiledMap;
+
+/**
+ * Tracks each ghost with a fixed number of weighted particles instead of the set of all its possible positions.
+ * At each move of Pacman the particles follow the rules of Ghost.checkCroisement: a ghost that sees Pacman and is not
+ * afraid goes toward him, the others go on straight and pick a random direction (without turning back) at junctions
+ * and dead ends. Then they are weighted by what Pacman sees: a visible ghost is exactly where it is seen, a hidden one
+ * is in none of the cells visible from Pacman. The particles are resampled when the weights degenerate, and spread
+ * again over the hidden cells if none of them is left.
+ * The memory and the time of an update only depend on the number of ghosts and particles, not on how long a ghost
+ * has been hidden.
+ */
+public class ParticleFilter {
+    private static final String DIRS = "UDLR";
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private final CompiledMap level;
+    private final char[][] walls;
+    private final int rows, columns;
+    private final int nbrOfParticles;
+    private final Random rand;
+    private final int[] freeCells; // x * columns + y of every cell that is not a wall
+
+    // particles of each ghost: cell (x * columns + y), direction (index in DIRS) and weight
+    private final int[][] cells;
+    private final int[][] dirs;
+    private final double[][] weights;
+    private final int[] nextCells, nextDirs; // buffers of the resampling
+    private final int[] open = new int[4]; // buffer of the directions a particle can take
+    private final double[][] probabilities; // probability of each cell for each ghost, updated with the particles
+
+    private long nbrOfUpdates;
+    private double hiddenMass; // sum, over the updates, of the probability given to the true cell of the hidden ghosts
+    private long hiddenObservations;
+    private long respreads;
+
+    /**
+     * create a tracker where each ghost is at its position in a state
+     * @param state the state giving the map and the initial positions of the ghosts
+     * @param nbrOfParticles the number of particles of each ghost
+     * @param seed the seed of the random moves of the particles
+     */
+    public ParticleFilter(BeliefState state, int nbrOfParticles, long seed) {
+        assert nbrOfParticles > 0 : "Precondition non respectée : pas de particule";
+        this.level = BeliefState.getLevel();
+        this.rows = state.getMap().length;
+        this.columns = state.getMap()[0].length;
+        this.walls = new char[this.rows][];
+        ArrayList < Integer > free = new ArrayList < > ();
+        for (int x = 0; x < this.rows; x++) {
+            this.walls[x] = state.getMap()[x].clone();
+            for (int y = 0; y < this.columns; y++) {
+                if (this.walls[x][y] != '#') {
+                    free.add(x * this.columns + y);
+                }
+            }
+        }
+        this.freeCells = new int[free.size()];
+        for (int i = 0; i < this.freeCells.length; i++) {
+            this.freeCells[i] = free.get(i);
+        }
+        this.nbrOfParticles = nbrOfParticles;
+        this.rand = new Random(seed);
+        int nbrOfGhosts = state.getNbrOfGhost();
+        this.cells = new int[nbrOfGhosts][nbrOfParticles];
+        this.dirs = new int[nbrOfGhosts][nbrOfParticles];
+        this.weights = new double[nbrOfGhosts][nbrOfParticles];
+        this.nextCells = new int[nbrOfParticles];
+        this.nextDirs = new int[nbrOfParticles];
+        this.probabilities = new double[nbrOfGhosts][this.rows * this.columns];
+        for (int g = 0; g < nbrOfGhosts; g++) {
+            this.reset(g, state.getPGhost(g));
+        }
+    }
+
+    /**
+     * put all the particles of a ghost at a known position (when it is seen, or sent back to its starting cell)
+     * @param ghost the ghost
+     * @param pos its position
+     */
+    public void reset(int ghost, Position pos) {
+        int cell = pos.x * this.columns + pos.y;
+        int dir = Math.max(0, DIRS.indexOf(pos.dir));
+        for (int p = 0; p < this.nbrOfParticles; p++) {
+            this.probabilities[ghost][this.cells[ghost][p]] = 0;
+        }
+        for (int p = 0; p < this.nbrOfParticles; p++) {
+            this.cells[ghost][p] = cell;
+            this.dirs[ghost][p] = dir;
+            this.weights[ghost][p] = 1.0 / this.nbrOfParticles;
+        }
+        this.probabilities[ghost][cell] = 1;
+    }
+
+    /**
+     * move the particles after a move of Pacman, and weight them by what he sees
+     * @param state the true state of the game after the move (the positions of its ghosts are only used when Pacman sees them)
+     * @param scared for each ghost, true if it is afraid (it then moves at random even when it sees Pacman)
+     */
+    public void update(BeliefState state, boolean[] scared) {
+        this.nbrOfUpdates++;
+        Position pacman = state.getPacmanPosition(), pacmanOld = state.getPacmanOldPosition();
+        for (int g = 0; g < this.cells.length; g++) {
+            Position ghost = state.getPGhost(g);
+            if (BeliefState.isVisible(ghost.x, ghost.y, pacman.x, pacman.y)) {
+                this.reset(g, ghost);
+                continue;
+            }
+            double total = 0;
+            for (int p = 0; p < this.nbrOfParticles; p++) {
+                this.probabilities[g][this.cells[g][p]] = 0;
+                this.move(g, p, pacmanOld, scared[g]);
+                int x = this.cells[g][p] / this.columns, y = this.cells[g][p] % this.columns;
+                if (BeliefState.isVisible(x, y, pacman.x, pacman.y)) {
+                    this.weights[g][p] = 0; // Pacman would have seen the ghost there
+                }
+                total += this.weights[g][p];
+            }
+            if (total == 0) {
+                this.respread(g, pacman);
+            }
+            else {
+                this.normalize(g, total);
+            }
+            this.hiddenMass += this.probabilities[g][ghost.x * this.columns + ghost.y];
+            this.hiddenObservations++;
+        }
+    }
+
+    /**
+     * move a particle as Ghost.checkCroisement moves a ghost
+     */
+    private void move(int g, int p, Position pacmanOld, boolean scared) {
+        int cell = this.cells[g][p];
+        int x = cell / this.columns, y = cell % this.columns;
+        int dir = this.dirs[g][p];
+        if (!scared && BeliefState.isVisible(x, y, pacmanOld.x, pacmanOld.y)) {// goes toward Pacman
+            if (x > pacmanOld.x) {
+                dir = 0;
+            } else if (x < pacmanOld.x) {
+                dir = 1;
+            } else if (y < pacmanOld.y) {
+                dir = 3;
+            } else {
+                dir = 2;
+            }
+        }
+        else {
+            boolean vertical = dir < 2;
+            boolean sideOpen = vertical ? this.isOpen(x, y, 2) || this.isOpen(x, y, 3) : this.isOpen(x, y, 0) || this.isOpen(x, y, 1);
+            if (sideOpen || !this.isOpen(x, y, dir)) {// junction or wall ahead: random direction among the open ones
+                int back = dir ^ 1;
+                int nbrOpen = 0;
+                for (int d = 0; d < 4; d++) {
+                    if (this.isOpen(x, y, d) && (d != back || !sideOpen)) {
+                        this.open[nbrOpen++] = d;
+                    }
+                }
+                if (nbrOpen > 0) {
+                    dir = this.open[this.rand.nextInt(nbrOpen)];
+                }
+            }
+        }
+        if (this.isOpen(x, y, dir)) {
+            x += DX[dir];
+            y += DY[dir];
+        }
+        this.cells[g][p] = x * this.columns + y;
+        this.dirs[g][p] = dir;
+    }
+
+    private boolean isOpen(int x, int y, int dir) {
+        int nx = x + DX[dir], ny = y + DY[dir];
+        return nx >= 0 && ny >= 0 && nx < this.rows && ny < this.columns && this.walls[nx][ny] != '#';
+    }
+
+    /**
+     * normalize the weights of a ghost, resample its particles if too few of them carry the weight, and update its probabilities
+     */
+    private void normalize(int g, double total) {
+        double sumSquares = 0;
+        for (int p = 0; p < this.nbrOfParticles; p++) {
+            this.weights[g][p] /= total;
+            sumSquares += this.weights[g][p] * this.weights[g][p];
+        }
+        if (1 / sumSquares < this.nbrOfParticles / 2.0) {// effective number of particles
+            this.resample(g);
+        }
+        for (int p = 0; p < this.nbrOfParticles; p++) {
+            this.probabilities[g][this.cells[g][p]] += this.weights[g][p];
+        }
+    }
+
+    /**
+     * systematic resampling: nbrOfParticles evenly spaced draws over the cumulated weights
+     */
+    private void resample(int g) {
+        double step = 1.0 / this.nbrOfParticles;
+        double u = this.rand.nextDouble() * step;
+        double cumul = this.weights[g][0];
+        int p = 0;
+        for (int i = 0; i < this.nbrOfParticles; i++) {
+            while (u > cumul && p < this.nbrOfParticles - 1) {
+                cumul += this.weights[g][++p];
+            }
+            this.nextCells[i] = this.cells[g][p];
+            this.nextDirs[i] = this.dirs[g][p];
+            u += step;
+        }
+        System.arraycopy(this.nextCells, 0, this.cells[g], 0, this.nbrOfParticles);
+        System.arraycopy(this.nextDirs, 0, this.dirs[g], 0, this.nbrOfParticles);
+        for (int i = 0; i < this.nbrOfParticles; i++) {
+            this.weights[g][i] = step;
+        }
+    }
+
+    /**
+     * the model lost the ghost: its particles are spread at random over the cells that Pacman does not see
+     */
+    private void respread(int g, Position pacman) {
+        this.respreads++;
+        double weight = 1.0 / this.nbrOfParticles;
+        for (int p = 0; p < this.nbrOfParticles; p++) {
+            int cell;
+            int tries = 0;
+            do {
+                cell = this.freeCells[this.rand.nextInt(this.freeCells.length)];
+            } while (BeliefState.isVisible(cell / this.columns, cell % this.columns, pacman.x, pacman.y) && ++tries < 100);
+            this.cells[g][p] = cell;
+            this.dirs[g][p] = this.rand.nextInt(4);
+            this.weights[g][p] = weight;
+            this.probabilities[g][cell] += weight;
+        }
+    }
+
+    /**
+     * give the probability that a ghost is in a cell
+     * @param ghost the ghost
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @return the probability, between 0 and 1
+     */
+    public double probability(int ghost, int x, int y) {
+        return this.probabilities[ghost][x * this.columns + y];
+    }
+
+    /**
+     * give the probability that at least one ghost is in a cell (the ghosts being tracked independently)
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @return the probability, between 0 and 1
+     */
+    public double occupancy(int x, int y) {
+        double free = 1;
+        for (int g = 0; g < this.probabilities.length; g++) {
+            free *= 1 - this.probabilities[g][x * this.columns + y];
+        }
+        return 1 - free;
+    }
+
+    /**
+     * @return the level the tracker was created for
+     */
+    public CompiledMap getLevel() {
+        return this.level;
+    }
+
+    public int getNbrOfGhosts() {
+        return this.cells.length;
+    }
+
+    /**
+     * @return a line with the number of updates, the mean probability given to the true cell of the hidden ghosts and the number of respreads
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, "particle filter (%d particles per ghost): %d updates, true cell of hidden ghosts at p=%.3f on average, %d respreads",
+            this.nbrOfParticles, this.nbrOfUpdates, this.hiddenObservations == 0 ? 0 : this.hiddenMass / this.hiddenObservations, this.respreads);
+    }
+}
@@ -0,0 +1,204 @@
+package logic;
+
+import data.CompiledMap;
+
+/**
+ * Precomputed answers to "can a ghost at this position reach this cell within k moves", for k up to MAX_STEPS.
+ * For each cell and heading of the ghost, and each k, a bitmask holds the cells it can reach in at most k moves.
+ * The first move follows the rules of Ghost.checkCroisement for a ghost that does not see Pacman (straight ahead in a
+ * corridor, no turning back at a junction); the next ones can go in any open direction, since the ghost may see Pacman
+ * and chase him, so the cones never miss a cell the ghost can reach. A ghost that sees Pacman now, or whose heading is
+ * unknown, has the heading ANY.
+ * Only the open cells are numbered, so a bitmask has one bit per open cell (about 8 MB for 1000 open cells).
+ * The cones are built once per level, when the map has at most MAX_CELLS cells; on a larger map forLevel says so once
+ * and returns null, and the search runs without them (no shared AND nodes, no fast path).
+ */
+public final class ReachabilityCones {
+    public static final int MAX_STEPS = 12;
+    public static final int MAX_CELLS = 2500;
+    static final int ANY = 4; // heading of a ghost that may go in any direction
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    private static final String DIRS = "UDLR";
+
+    private static ReachabilityCones current;
+    private static CompiledMap tooLarge; // the last level without cones
+
+    private final CompiledMap level;
+    private final int rows, columns, words;
+    private final int[] open; // number of each cell (x * columns + y) among the open cells, -1 for a wall
+    private final long[] cones; // bitmask of (open cell, heading, k) at ((cell * 5 + heading) * (MAX_STEPS + 1) + k) * words
+
+    private ReachabilityCones(CompiledMap level, char[][] map) {
+        this.level = level;
+        this.rows = map.length;
+        this.columns = map[0].length;
+        this.open = new int[this.rows * this.columns];
+        int cells = 0;
+        for (int c = 0; c < this.open.length; c++) {
+            this.open[c] = map[c / this.columns][c % this.columns] == '#' ? -1 : cells++;
+        }
+        this.words = (cells + 63) / 64;
+        // balls[k]: open cells at most k moves away from each open cell, in any direction
+        long[][] balls = new long[MAX_STEPS][cells * this.words];
+        for (int c = 0; c < cells; c++) {
+            set(balls[0], c * this.words, c);
+        }
+        for (int k = 1; k < MAX_STEPS; k++) {
+            for (int c = 0; c < this.open.length; c++) {
+                int o = this.open[c];
+                if (o < 0) {
+                    continue;
+                }
+                or(balls[k], o * this.words, balls[k - 1], o * this.words, this.words);
+                for (int d = 0; d < 4; d++) {
+                    int n = neighbour(map, c, d);
+                    if (n >= 0) {
+                        or(balls[k], o * this.words, balls[k - 1], this.open[n] * this.words, this.words);
+                    }
+                }
+            }
+        }
+        this.cones = new long[cells * 5 * (MAX_STEPS + 1) * this.words];
+        for (int c = 0; c < this.open.length; c++) {
+            int o = this.open[c];
+            if (o < 0) {
+                continue;
+            }
+            for (int heading = 0; heading <= ANY; heading++) {
+                boolean[] first = this.firstMoves(map, c, heading);
+                for (int k = 0; k <= MAX_STEPS; k++) {
+                    int cone = this.offset(o, heading, k);
+                    set(this.cones, cone, o);
+                    for (int d = 0; k > 0 && d < 4; d++) {
+                        if (first[d]) {
+                            or(this.cones, cone, balls[k - 1], this.open[neighbour(map, c, d)] * this.words, this.words);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * the directions a ghost can take first: all the open ones for ANY, otherwise those allowed by the rules
+     */
+    private boolean[] firstMoves(char[][] map, int cell, int heading) {
+        boolean[] open = new boolean[4];
+        for (int d = 0; d < 4; d++) {
+            open[d] = neighbour(map, cell, d) >= 0;
+        }
+        if (heading == ANY) {
+            return open;
+        }
+        boolean sideOpen = heading < 2 ? open[2] || open[3] : open[0] || open[1];
+        boolean[] first = new boolean[4];
+        if (!sideOpen && open[heading]) {// corridor
+            first[heading] = true;
+        }
+        else {
+            for (int d = 0; d < 4; d++) {
+                first[d] = open[d] && (d != (heading ^ 1) || !sideOpen);
+            }
+        }
+        return first;
+    }
+
+    private int neighbour(char[][] map, int cell, int dir) {
+        int x = cell / this.columns + DX[dir], y = cell % this.columns + DY[dir];
+        return x >= 0 && y >= 0 && x < this.rows && y < this.columns && map[x][y] != '#' ? x * this.columns + y : -1;
+    }
+
+    private int offset(int cell, int heading, int k) {
+        return ((cell * 5 + heading) * (MAX_STEPS + 1) + k) * this.words;
+    }
+
+    private static void set(long[] bits, int offset, int index) {
+        bits[offset + (index >>> 6)] |= 1L << index;
+    }
+
+    private static void or(long[] to, int toOffset, long[] from, int fromOffset, int words) {
+        for (int w = 0; w < words; w++) {
+            to[toOffset + w] |= from[fromOffset + w];
+        }
+    }
+
+    /**
+     * give the cones of the current level (BeliefState.getLevel()), built on the first call for this level
+     * @param state a state of the level
+     * @return the cones, null if the map has more than MAX_CELLS cells (printed on the first call for the level)
+     */
+    public static ReachabilityCones forLevel(BeliefState state) {
+        CompiledMap level = BeliefState.getLevel();
+        ReachabilityCones cones = current;
+        if (cones == null || cones.level != level) {
+            char[][] map = state.getMap();
+            if (map.length * map[0].length > MAX_CELLS) {
+                if (tooLarge != level) {// said once per level
+                    tooLarge = level;
+                    System.out.println("Carte " + map.length + "x" + map[0].length + " : trop grande pour les cones, recherche sans eux");
+                }
+                return null;
+            }
+            cones = new ReachabilityCones(level, map);
+            current = cones;
+        }
+        return cones;
+    }
+
+    /**
+     * tell in O(1) if a ghost can be on a cell within k moves
+     * @param ghost a possible position of the ghost
+     * @param seesPacman true if the ghost sees Pacman (it then goes toward him, maybe turning back)
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @param k the number of moves, at most MAX_STEPS
+     * @return false if the ghost cannot be on the cell within k moves
+     */
+    public boolean canReach(Position ghost, boolean seesPacman, int x, int y, int k) {
+        int dir = DIRS.indexOf(ghost.dir);
+        int heading = seesPacman || dir < 0 ? ANY : dir;
+        int from = this.open[ghost.x * this.columns + ghost.y], cell = this.open[x * this.columns + y];
+        if (from < 0 || cell < 0) {
+            return false;
+        }
+        return (this.cones[this.offset(from, heading, Math.min(k, MAX_STEPS)) + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    /**
+     * tell if no ghost of a state can meet Pacman within a number of moves of both: the states that only differ from this
+     * one by the positions of the ghosts then have the same future, and the search can explore one of them
+     * @param state the state
+     * @param moves the number of moves of Pacman
+     * @return true if it is sure that no ghost meets Pacman, false if it may happen (or moves is too large to tell)
+     */
+    public boolean isSafe(BeliefState state, int moves) {
+        Position pacman = state.getPacmanPos();
+        return !this.mayReach(state, pacman.x, pacman.y, 2 * moves + 1); // Pacman and the ghost move toward each other, and may cross
+    }
+
+    /**
+     * tell if a possible position of a ghost of a state may be on a cell within k moves
+     * @param state the state
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @param k the number of moves
+     * @return false if it is sure that no ghost can be there, true if one may be (or k is larger than MAX_STEPS)
+     */
+    public boolean mayReach(BeliefState state, int x, int y, int k) {
+        if (k > MAX_STEPS) {
+            return true;
+        }
+        Position pacman = state.getPacmanPos();
+        for (int g = 0; g < state.getNbrOfGhost(); g++) {
+            for (Position pos: state.getGhostPositions(g)) {
+                // the cone of a ghost that sees Pacman holds the others, so the line of sight is only looked at near him
+                if (this.canReach(pos, true, x, y, k)
+                    && (BeliefState.isVisible(pos.x, pos.y, pacman.x, pacman.y) || this.canReach(pos, false, x, y, k))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,177 @@
+package logic;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import data.CompiledMap;
+import data.Map;
+import data.MazeGenerator;
+import view.Canvas;
+
+/**
+ * Scaling benchmark of the AI: per-move latency and memory against the map size and the number of ghosts.
+ * The maps are warehouse-style layouts (rows of shelves separated by aisles, with cross aisles every few columns)
+ * or mazes built by data.MazeGenerator.
+ * It runs without window: the AI plays on its belief state, one of the possible resulting states being picked at random after each move.
+ * options :
+ *   --sizes 100,200,500,1000   sizes of the maps (number of cells of a side)
+ *   --ghosts 1,2,4,8           numbers of ghosts
+ *   --moves n                  number of moves played on each map
+ *   --seed n                   seed of the random generators
+ *   --maze                     use generated mazes instead of warehouse layouts
+ *   --loops p                  probability of opening a wall between two corridors of a maze
+ */
+public class ScalingBenchmark {
+
+	/**
+	 * create a warehouse layout
+	 * @param size number of cells of a side
+	 * @param nbrOfGhosts number of ghosts
+	 * @param rand random generator used to place the ghosts
+	 * @return the cells of the map, in the .map format
+	 */
+	static char[][] warehouse(int size, int nbrOfGhosts, Random rand) {
+		char[][] cells = new char[size][size];
+		for(char[] row: cells) {
+			Arrays.fill(row, '#');
+		}
+		for(int i = 1; i < size - 1; i++) {
+			for(int j = 1; j < size - 1; j++) {
+				if(i % 3 == 1 || j % 10 == 1 || j == size - 2) {//aisles and cross aisles
+					cells[i][j] = '.';
+				}
+			}
+		}
+		int last = size - 2 - (size - 3) % 3;//last aisle row
+		cells[1][size - 2] = '*';
+		cells[last][1] = '*';
+		cells[last][size - 2] = '*';
+		cells[1][1] = 'P';
+		for(int g = 0; g < nbrOfGhosts; g++) {
+			int i, j;
+			do {//far enough from pacman so that it is not caught at once
+				i = 1 + rand.nextInt(size - 2);
+				j = 1 + rand.nextInt(size - 2);
+			} while(cells[i][j] != '.' || i + j < size / 2);
+			cells[i][j] = 'F';
+		}
+		return cells;
+	}
+
+	/**
+	 * install a level as the current level of the belief states
+	 * @param level the compiled level
+	 * @return the initial belief state of the level
+	 */
+	static BeliefState install(CompiledMap level) {
+		int tailleCase = Map.TAILLE_CASE_VIRTUELLE;
+		ArrayList<int[]> ghosts = new ArrayList<int[]>();
+		for(int[] pos: level.getGhosts()) {
+			int[] posGhost = {pos[1] * tailleCase, pos[0] * tailleCase};
+			ghosts.add(posGhost);
+		}
+		BeliefState initial = BeliefState.fromLevel(level, 0, Pacman.LIFE_START);
+		BeliefState.setStaticVariables(level, level.getPacmanColonne() * tailleCase, level.getPacmanLigne() * tailleCase, ghosts, tailleCase);
+		return new BeliefState(initial, false);
+	}
+
+	/**
+	 * forget everything the AI learnt during the previous game
+	 */
+	static void resetAI() {
+		AI.alreadyBeenHere.clear();
+		AI.alreadyBeenHerePairs.clear();
+		AI.visitedBeliefStates.clear();
+		AI.nbOfMeets.clear();
+		AI.visitsOfSearch.clear();
+		GumTour.clear();
+	}
+
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * bytes allocated by the current thread since it started, -1 if the JVM does not provide it
+	 */
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
+	static int[] parseList(String list) {
+		String[] items = list.split(",");
+		int[] values = new int[items.length];
+		for(int i = 0; i < items.length; i++) {
+			values[i] = Integer.parseInt(items[i].trim());
+		}
+		return values;
+	}
+
+	public static void main(String[] args) {
+		int[] sizes = {100, 200, 500, 1000};
+		int[] ghostCounts = {1, 2, 4, 8};
+		int moves = 20;
+		long seed = 42;
+		boolean maze = false;
+		double loops = 0.1;
+		for(int a = 0; a < args.length; a++) {
+			switch(args[a]) {
+			case "--sizes": sizes = parseList(args[++a]); break;
+			case "--ghosts": ghostCounts = parseList(args[++a]); break;
+			case "--moves": moves = Integer.parseInt(args[++a]); break;
+			case "--seed": seed = Long.parseLong(args[++a]); break;
+			case "--maze": maze = true; break;
+			case "--loops": loops = Double.parseDouble(args[++a]); break;
+			default: System.out.println("Option inconnue : " + args[a]);
+			}
+		}
+		Canvas.setHeadless(true);
+		System.out.println("size;ghosts;free cells;moves;mean ms;p50 ms;p99 ms;max ms;heap MB;max heap MB;allocated MB/move");
+		for(int size: sizes) {
+			for(int nbrOfGhosts: ghostCounts) {
+				Random rand = new Random(seed);
+				AI.rand.setSeed(seed);
+				resetAI();
+				CompiledMap level;
+				if(maze) {
+					MazeGenerator generator = new MazeGenerator(seed);
+					generator.setTaille(size);
+					generator.setBoucles(loops);
+					generator.setNbFantomes(nbrOfGhosts);
+					level = generator.generateLevel(0);
+				}
+				else {
+					level = new CompiledMap(0, "blue", warehouse(size, nbrOfGhosts, rand));
+				}
+				BeliefState state = install(level);
+				System.gc();
+				long levelMemory = usedMemory();//the previous level is no longer referenced
+				long maxMemory = 0;
+				LatencyHistogram latencies = new LatencyHistogram();
+				long allocated = allocatedBytes();
+				int played = 0;
+				while(played < moves && state.getLife() > 0 && state.getNbrOfGommes() > 0) {
+					long start = System.nanoTime();
+					String move = AI.findNextMove(state);
+					latencies.record(System.nanoTime() - start, state.getNbrOfGhostPositions());
+					played++;
+					maxMemory = Math.max(maxMemory, usedMemory());
+					Result result = state.extendsBeliefState(move);
+					state = result.getBeliefState(rand.nextInt(result.size()));
+				}
+				allocated = allocated >= 0 ? allocatedBytes() - allocated : -1;
+				System.out.printf("%d;%d;%d;%d;%.3f;%.3f;%.3f;%.3f;%.1f;%.1f;%.1f%n", size, nbrOfGhosts, level.getGamePositions().size(), played,
+						latencies.getMean() / 1e6, latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, latencies.getMax() / 1e6,
+						levelMemory / 1048576.0, maxMemory / 1048576.0,
+						allocated >= 0 && played > 0 ? allocated / 1048576.0 / played : -1.0);
+			}
+		}
+	}
+}
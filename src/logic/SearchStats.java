@@ -0,0 +1,173 @@
+package logic;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Counters of what the AND-OR search does for each move: nodes created, expansions, heuristic and leaf evaluations,
+ * alpha and beta cutoffs, depth reached, belief fan-out of the Results, states merged and pruned, visitedBeliefStates hits and time per phase.
+ * Each thread counts in its own array; the arrays are merged into one row per move by endMove.
+ * Everything is guarded by ENABLED, a static final flag read once from the system property PROPERTY,
+ * so the JIT removes the instrumentation when it is off.
+ */
+public final class SearchStats {
+    public static final String PROPERTY = "pacman.searchStats";
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    // counters (summed when merged, except the max ones)
+    static final int AND_NODES = 0;        // NodeBeliefState created
+    static final int OR_NODES = 1;         // NodeAction created
+    static final int EXPANSIONS = 2;       // belief states expanded
+    static final int HEURISTIC_CALLS = 3;  // calls of NodeBeliefState.evaluate
+    static final int LEAVES = 4;           // nodes whose heuristic value is returned by orSearch
+    static final int ALPHA_CUTOFFS = 5;    // cutoffs in andSearch
+    static final int BETA_CUTOFFS = 6;     // cutoffs in orSearch
+    static final int MAX_DEPTH = 7;        // deepest ply reached (max)
+    static final int RESULTS = 8;          // Results produced by the expansions
+    static final int RESULT_STATES = 9;    // belief states in these Results
+    static final int MAX_RESULT = 10;      // largest Result (max)
+    static final int CACHE_HITS = 11;      // visitedBeliefStates hits
+    static final int CACHE_MISSES = 12;    // visitedBeliefStates misses
+    static final int EXPAND_NANOS = 13;    // time spent in BeliefState.extendsBeliefState
+    static final int EVALUATE_NANOS = 14;  // time spent in the heuristic
+    static final int SEARCH_NANOS = 15;    // time spent in OrAndTree.getNextAction
+    static final int MOVE_NANOS = 16;      // time spent in AI.findNextMove
+    static final int MERGED_STATES = 17;   // belief states removed by BeliefState.merge
+    static final int PRUNED_STATES = 18;   // belief states removed by BeliefBudget
+    static final int PRUNED_POSITIONS = 19;// ghost positions removed by BeliefBudget
+    static final int SKIPPED_CHILDREN = 20;// belief states not explored by the expectimax AND nodes
+    static final int SAFE_SKIPPED = 21;    // belief states not explored because no ghost can reach pacman (ReachabilityCones)
+    static final int LOST_ACTIONS = 22;    // actions of the root not searched because pacman dies in all their belief states
+    static final int FAST_MOVES = 23;      // moves given by GumRoutePlanner without searching (0 or 1 per move)
+    static final int CORRIDOR_STEPS = 24;  // cells followed along corridors by the macro actions
+    static final int NB_COUNTERS = 25;
+
+    static final String[] NAMES = {"andNodes", "orNodes", "expansions", "heuristicCalls", "leaves", "alphaCutoffs", "betaCutoffs",
+        "maxDepth", "results", "resultStates", "maxResult", "cacheHits", "cacheMisses", "expandNanos", "evaluateNanos", "searchNanos", "moveNanos", "mergedStates", "prunedStates", "prunedPositions", "skippedChildren", "safeSkipped", "lostActions", "fastMoves", "corridorSteps"};
+
+    private static final ConcurrentLinkedQueue < long[] > allCounters = new ConcurrentLinkedQueue < > ();
+    private static final ThreadLocal < long[] > counters = ThreadLocal.withInitial(() -> {
+        long[] c = new long[NB_COUNTERS];
+        allCounters.add(c);
+        return c;
+    });
+    // one row per move: the merged counters, then the belief size and the move number
+    private static final ArrayList < long[] > moves = new ArrayList < > ();
+
+    private SearchStats() {
+    }
+
+    /**
+     * Add to a counter of the current thread
+     * @param counter the counter
+     * @param n the amount to add
+     */
+    static void add(int counter, long n) {
+        counters.get()[counter] += n;
+    }
+
+    /**
+     * Raise a max counter of the current thread
+     * @param counter the counter (MAX_DEPTH or MAX_RESULT)
+     * @param value the new value
+     */
+    static void max(int counter, long value) {
+        long[] c = counters.get();
+        c[counter] = Math.max(c[counter], value);
+    }
+
+    private static boolean isMax(int counter) {
+        return counter == MAX_DEPTH || counter == MAX_RESULT;
+    }
+
+    /**
+     * Merge the counters of all the threads into the row of the move that just ended, and reset them
+     * @param beliefSize the size of the belief the move was computed on
+     */
+    static synchronized void endMove(int beliefSize) {
+        long[] row = new long[NB_COUNTERS + 2];
+        for (long[] c: allCounters) {
+            for (int counter = 0; counter < NB_COUNTERS; counter++) {
+                row[counter] = isMax(counter) ? Math.max(row[counter], c[counter]) : row[counter] + c[counter];
+                c[counter] = 0;
+            }
+        }
+        row[NB_COUNTERS] = beliefSize;
+        row[NB_COUNTERS + 1] = moves.size();
+        moves.add(row);
+    }
+
+    /**
+     * Give the number of moves recorded
+     * @return the number of moves
+     */
+    public static synchronized int size() {
+        return moves.size();
+    }
+
+    /**
+     * Give a counter of a move
+     * @param move the move number
+     * @param counter the counter
+     * @return the value of the counter for this move
+     */
+    static synchronized long get(int move, int counter) {
+        return moves.get(move)[counter];
+    }
+
+    /**
+     * Print the totals of all the moves
+     * @param out where to print
+     */
+    public static synchronized void printSummary(PrintStream out) {
+        long[] total = new long[NB_COUNTERS];
+        for (long[] row: moves) {
+            for (int counter = 0; counter < NB_COUNTERS; counter++) {
+                total[counter] = isMax(counter) ? Math.max(total[counter], row[counter]) : total[counter] + row[counter];
+            }
+        }
+        StringBuilder s = new StringBuilder("search stats (" + moves.size() + " moves):");
+        for (int counter = 0; counter < NB_COUNTERS; counter++) {
+            s.append(' ').append(NAMES[counter]).append('=').append(total[counter]);
+        }
+        out.println(s);
+    }
+
+    /**
+     * Write one line per move, as JSON if the file name ends with .json, as CSV (';' separated) otherwise
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static synchronized void write(String file) throws IOException {
+        boolean json = file.endsWith(".json");
+        try (PrintStream out = new PrintStream(file)) {
+            if (json) {
+                out.println("[");
+            } else {
+                out.println("move;beliefSize;" + String.join(";", NAMES));
+            }
+            for (int m = 0; m < moves.size(); m++) {
+                long[] row = moves.get(m);
+                StringBuilder s = new StringBuilder();
+                if (json) {
+                    s.append("  {\"move\": ").append(row[NB_COUNTERS + 1]).append(", \"beliefSize\": ").append(row[NB_COUNTERS]);
+                    for (int counter = 0; counter < NB_COUNTERS; counter++) {
+                        s.append(", \"").append(NAMES[counter]).append("\": ").append(row[counter]);
+                    }
+                    s.append(m + 1 < moves.size() ? "}," : "}");
+                } else {
+                    s.append(row[NB_COUNTERS + 1]).append(';').append(row[NB_COUNTERS]);
+                    for (int counter = 0; counter < NB_COUNTERS; counter++) {
+                        s.append(';').append(row[counter]);
+                    }
+                }
+                out.println(s);
+            }
+            if (json) {
+                out.println("]");
+            }
+        }
+    }
+}
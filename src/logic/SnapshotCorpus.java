@@ -0,0 +1,261 @@
+package logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import data.CompiledMap;
+
+/**
+ * A corpus of belief states captured during games, to run the AI on fixed inputs (see CorpusBenchmark).
+ * The binary format (big-endian, DataOutputStream) is:
+ *   header:   MAGIC (int), VERSION (byte)
+ *   then a sequence of records, each starting with its type (byte):
+ *   LEVEL:    map number (int), wall color (UTF), size n (short), n*n cells (bytes), cell size (int),
+ *             pacman initial x, y (int, int), number of ghosts g (short), g * initial x, y (int, int)
+ *   SNAPSHOT: tag (UTF), move number (long), seed of the AI (long), level (int, rank of its LEVEL record),
+ *             number of visited positions v (int), v * (position, number of visits (int)),
+ *             number of states s (short), s * state (see BeliefState.write)
+ * A LEVEL record is written before the first snapshot taken on that level.
+ */
+public class SnapshotCorpus {
+	public static final int MAGIC = 0x50534E50;//"PSNP"
+	public static final byte VERSION = 1;
+	private static final byte LEVEL = 1;
+	private static final byte SNAPSHOT = 2;
+
+	private DataOutputStream out;
+	private CompiledMap lastLevel;
+	private int nbrOfLevels;
+
+	/**
+	 * The level of a snapshot: the compiled map and the initial positions used by the belief states
+	 */
+	static class Level {
+		final CompiledMap map;
+		final int tailleCase;
+		final int[] pacmanInit;
+		final ArrayList<int[]> ghostsInit;
+
+		Level(CompiledMap map, int tailleCase, int[] pacmanInit, ArrayList<int[]> ghostsInit) {
+			this.map = map;
+			this.tailleCase = tailleCase;
+			this.pacmanInit = pacmanInit;
+			this.ghostsInit = ghostsInit;
+		}
+	}
+
+	/**
+	 * A captured situation: the belief states pacman had at a given move, and what the AI knew of the game so far
+	 */
+	public static class Snapshot {
+		final String tag;
+		final long move;
+		final long seed;
+		final Level level;
+		final ArrayList<Position> visited;
+		final ArrayList<Integer> visits;
+		final ArrayList<BeliefState> states;
+
+		Snapshot(String tag, long move, long seed, Level level, ArrayList<Position> visited, ArrayList<Integer> visits, ArrayList<BeliefState> states) {
+			this.tag = tag;
+			this.move = move;
+			this.seed = seed;
+			this.level = level;
+			this.visited = visited;
+			this.visits = visits;
+			this.states = states;
+		}
+
+		/**
+		 * make the level of the snapshot the current one and give the AI the history and the seed it had when it was captured
+		 * (the caches of the AI are cleared)
+		 */
+		void install() {
+			BeliefState.setStaticVariables(this.level.map, this.level.pacmanInit[0], this.level.pacmanInit[1], this.level.ghostsInit, this.level.tailleCase);
+			ScalingBenchmark.resetAI();
+			for(int i = 0; i < this.visited.size(); i++) {
+				Position pos = this.visited.get(i);
+				AI.alreadyBeenHere.put(pos, this.visits.get(i));
+				AI.alreadyBeenHerePairs.add(new Pair(pos.x, pos.y));
+			}
+			AI.rand.setSeed(this.seed);
+		}
+
+		public String getTag() {
+			return this.tag;
+		}
+
+		public long getMove() {
+			return this.move;
+		}
+
+		/**
+		 * @return the belief states of the snapshot (Map.getVisibleBeliefState at that move)
+		 */
+		public ArrayList<BeliefState> getStates() {
+			return this.states;
+		}
+	}
+
+	private SnapshotCorpus(DataOutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * create a corpus file (an existing file is replaced)
+	 * @param file the file of the corpus
+	 * @return the corpus, to which snapshots can be added
+	 * @throws IOException if the file cannot be created
+	 */
+	public static SnapshotCorpus create(String file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		return new SnapshotCorpus(out);
+	}
+
+	/**
+	 * add a snapshot of the current level (BeliefState.getLevel()) and of the history of the AI
+	 * @param tag a free text describing the situation
+	 * @param move the number of the move
+	 * @param seed the seed given to the AI when the snapshot is replayed
+	 * @param states the belief states of pacman
+	 * @throws IOException if the file cannot be written
+	 */
+	public void capture(String tag, long move, long seed, List<BeliefState> states) throws IOException {
+		if(BeliefState.getLevel() != this.lastLevel) {
+			this.lastLevel = BeliefState.getLevel();
+			this.writeLevel();
+			this.nbrOfLevels++;
+		}
+		this.out.writeByte(SNAPSHOT);
+		this.out.writeUTF(tag);
+		this.out.writeLong(move);
+		this.out.writeLong(seed);
+		this.out.writeInt(this.nbrOfLevels - 1);
+		this.out.writeInt(AI.alreadyBeenHere.size());
+		for(Map.Entry<Position, Integer> visit: AI.alreadyBeenHere.entrySet()) {
+			BeliefState.writePosition(this.out, visit.getKey());
+			this.out.writeInt(visit.getValue());
+		}
+		this.out.writeShort(states.size());
+		for(BeliefState state: states) {
+			state.write(this.out);
+		}
+	}
+
+	private void writeLevel() throws IOException {
+		CompiledMap map = this.lastLevel;
+		this.out.writeByte(LEVEL);
+		this.out.writeInt(map.getMapNumber());
+		this.out.writeUTF(map.getCouleurMur());
+		this.out.writeShort(map.getNbCases());
+		for(int i = 0; i < map.getNbCases(); i++) {
+			for(int j = 0; j < map.getNbCases(); j++) {
+				this.out.writeByte(map.getCase(i, j));
+			}
+		}
+		this.out.writeInt(BeliefState.getTailleCase());
+		int[] pacmanInit = BeliefState.getPacmanInit();
+		this.out.writeInt(pacmanInit[0]);
+		this.out.writeInt(pacmanInit[1]);
+		this.out.writeShort(BeliefState.getListPGhostInit().size());
+		for(int[] pos: BeliefState.getListPGhostInit()) {
+			this.out.writeInt(pos[0]);
+			this.out.writeInt(pos[1]);
+		}
+	}
+
+	/**
+	 * write the end of the corpus and close the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+	/**
+	 * read all the snapshots of a corpus
+	 * @param file the file of the corpus
+	 * @return the snapshots, in the order they were captured
+	 * @throws IOException if the file cannot be read or is not a corpus of this version
+	 */
+	public static ArrayList<Snapshot> load(String file) throws IOException {
+		ArrayList<Snapshot> snapshots = new ArrayList<Snapshot>();
+		ArrayList<Level> levels = new ArrayList<Level>();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a snapshot corpus");
+			}
+			byte version = in.readByte();
+			if(version != VERSION) {
+				throw new IOException(file + ": version " + version + " of the corpus is not supported (expected " + VERSION + ")");
+			}
+			while(true) {
+				int type;
+				try {
+					type = in.readByte();
+				}
+				catch(EOFException e) {
+					break;
+				}
+				if(type == LEVEL) {
+					levels.add(readLevel(in));
+				}
+				else if(type == SNAPSHOT) {
+					String tag = in.readUTF();
+					long move = in.readLong();
+					long seed = in.readLong();
+					Level level = levels.get(in.readInt());
+					int nbrVisited = in.readInt();
+					ArrayList<Position> visited = new ArrayList<Position>(nbrVisited);
+					ArrayList<Integer> visits = new ArrayList<Integer>(nbrVisited);
+					for(int i = 0; i < nbrVisited; i++) {
+						visited.add(BeliefState.readPosition(in));
+						visits.add(in.readInt());
+					}
+					int nbrStates = in.readUnsignedShort();
+					ArrayList<BeliefState> states = new ArrayList<BeliefState>(nbrStates);
+					for(int i = 0; i < nbrStates; i++) {
+						states.add(BeliefState.read(in));
+					}
+					snapshots.add(new Snapshot(tag, move, seed, level, visited, visits, states));
+				}
+				else {
+					throw new IOException(file + ": unknown record " + type);
+				}
+			}
+		}
+		return snapshots;
+	}
+
+	private static Level readLevel(DataInputStream in) throws IOException {
+		int mapNumber = in.readInt();
+		String color = in.readUTF();
+		int size = in.readUnsignedShort();
+		char[][] cases = new char[size][size];
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++) {
+				cases[i][j] = (char)in.readUnsignedByte();
+			}
+		}
+		int tailleCase = in.readInt();
+		int[] pacmanInit = {in.readInt(), in.readInt()};
+		int nbrOfGhosts = in.readUnsignedShort();
+		ArrayList<int[]> ghostsInit = new ArrayList<int[]>(nbrOfGhosts);
+		for(int i = 0; i < nbrOfGhosts; i++) {
+			int[] pos = {in.readInt(), in.readInt()};
+			ghostsInit.add(pos);
+		}
+		return new Level(new CompiledMap(mapNumber, color, cases), tailleCase, pacmanInit, ghostsInit);
+	}
+}
@@ -79,9 +79,8 @@ public class ArcCircle extends Figure {
      */
     public void draw()
     {
-        Canvas canvas = Canvas.getCanvas();
         if(this.isVisible())
-        	canvas.draw(this, getColor(), new Arc2D.Double(getX(),getY(),getWidth(),getHeight(),this.start,this.extent,2));
+        	paint(new Arc2D.Double(getX(),getY(),getWidth(),getHeight(),this.start,this.extent,2));
     }
 
 	 	/**
@@ -2,14 +2,24 @@ package view;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Canvas is a class to allow for simple graphical drawing on a canvas.
  * This is a modification of the general purpose Canvas, specially made for
  * the BlueJ "shapes" example.
  *
+ * The game logic registers shapes (draw, erase, drawStatic) and publishes a
+ * frame at the end of each tick. A frame is an immutable snapshot handed over
+ * to a separate render thread through an AtomicReference: the logic never
+ * waits for the rendering and the render thread always draws the latest frame,
+ * skipping the ones published in between.
+ *
  * @author Bruce Quig
  * @author Michael Kolling (mik)
  *
@@ -25,6 +35,52 @@ public class Canvas
 	// shape objects in this project clean and simple for educational purposes.
 
 	private static Canvas canvasSingleton;
+	private static boolean headless;
+
+	/** The colors usable by the shapes, created once */
+	private static final HashMap<String, Color> COLORS = new HashMap<String, Color>();
+	static {
+		COLORS.put("red", new Color(235, 25, 25));
+		COLORS.put("black", Color.black);
+		COLORS.put("blue", new Color(0, 0, 204));
+		COLORS.put("violet", new Color(130, 0, 140));
+		COLORS.put("yellow", new Color(255, 230, 0));
+		COLORS.put("green", new Color(80, 160, 60));
+		COLORS.put("pink", new Color(255, 0, 127));
+		COLORS.put("white", Color.white);
+		COLORS.put("redG", new Color(239, 7, 7));
+		COLORS.put("blueG", new Color(102, 254, 255));
+		COLORS.put("orangeG", new Color(250, 156, 0));
+		COLORS.put("pinkG", new Color(255, 152, 153));
+	}
+
+	/** The area where the score and lives are printed, redrawn every frame */
+	private static final Rectangle HUD = new Rectangle(0, 0, WIDTH, 45);
+	private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 20);
+
+	/** Time between two frames drawn by the render thread (60 frames per second) */
+	private static final long RENDER_PERIOD = 1000000000L / 60;
+
+	/**
+	 * Run without any window: the figures are not drawn and getCanvas() must not be called.
+	 * @param isHeadless true to run without window
+	 */
+	public static void setHeadless(boolean isHeadless)
+	{
+		headless = isHeadless;
+		if(isHeadless) {
+			System.setProperty("java.awt.headless", "true");
+		}
+	}
+
+	/**
+	 * Check whether the game runs without window
+	 * @return true if nothing is drawn
+	 */
+	public static boolean isHeadless()
+	{
+		return headless;
+	}
 
 	/**
 	 * Factory method to get the canvas singleton object.
@@ -49,10 +105,18 @@ public class Canvas
 	private Graphics2D graphic;
 	private Color backgroundColor;
 	private Image canvasImage;
-	private List<Object> objects;
-	private HashMap<Object, ShapeDescription> shapes;
-	private boolean upPressed, downPressed, leftPressed, rightPressed;
-	private boolean isAIdriven;
+	private BufferedImage backgroundImage;
+	private Graphics2D backgroundGraphic;
+	// logic side: the shapes registered for the next frame
+	private SceneGraph<ShapeDescription> scene;
+	private long staticSequence;
+	// handoff between the logic and the render thread
+	private AtomicReference<Frame> latestFrame;
+	private ConcurrentLinkedQueue<StaticShape> staticShapes;
+	// render side: the frame currently on screen
+	private Frame renderedFrame;
+	private volatile boolean upPressed, downPressed, leftPressed, rightPressed;
+	private volatile boolean isAIdriven;
 
 	/**
 	 * Create a Canvas.
@@ -83,8 +147,9 @@ public class Canvas
 		canvas.setPreferredSize(new Dimension(width, height));
 		backgroundColor = bgColor;
 		frame.pack();
-		objects = new ArrayList<Object>();
-		shapes = new HashMap<Object, ShapeDescription>();
+		scene = new SceneGraph<ShapeDescription>();
+		latestFrame = new AtomicReference<Frame>();
+		staticShapes = new ConcurrentLinkedQueue<StaticShape>();
 
 		canvas.addKeyListener(new KeyboardListener());
 		canvas.setFocusable(true);
@@ -153,10 +218,18 @@ public class Canvas
 	 */
 	public void printString(String text, int x, int y)
 	{
-		graphic.setFont(new Font("Arial", Font.BOLD, 20));
+		drawString(text, x, y);
+		canvas.repaint();
+	}
+
+	/**
+	 * Draws a String on the offscreen image. (Does not repaint.)
+	 */
+	private void drawString(String text, int x, int y)
+	{
+		graphic.setFont(HUD_FONT);
 		graphic.setColor(Color.WHITE);
 		graphic.drawString(text, x, y);
-		canvas.repaint();
 	}
 
 	/**
@@ -177,36 +250,67 @@ public class Canvas
 			graphic.setColor(backgroundColor);
 			graphic.fillRect(0, 0, size.width, size.height);
 			graphic.setColor(Color.black);
+			backgroundImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+			backgroundGraphic = backgroundImage.createGraphics();
+			backgroundGraphic.setColor(backgroundColor);
+			backgroundGraphic.fillRect(0, 0, size.width, size.height);
+			Thread renderThread = new Thread(this::renderLoop, "render");
+			renderThread.setDaemon(true);
+			renderThread.start();
 		}
 		frame.setVisible(visible);
 	}
 
 	/**
-	 * Draw a given shape onto the canvas.
-	 * @param  referenceObject  an object to define identity for this shape
+	 * Draw a given shape onto the canvas, or replace it in place if it is already drawn.
+	 * @param  handle           the handle of the shape in the scene, or -1 (or a stale handle) for a new shape
+	 * @param  layer            the layer of a new shape (SceneGraph.DECOR, PACMAN...)
 	 * @param  color            the color of the shape
 	 * @param  shape            the shape object to be drawn on the canvas
+	 * @return the handle of the shape in the scene
 	 */
-	// Note: this is a slightly backwards way of maintaining the shape
-	// objects. It is carefully designed to keep the visible shape interfaces
-	// in this project clean and simple for educational purposes.
-	public void draw(Object referenceObject, String color, Shape shape)
+	public int draw(int handle, int layer, String color, Shape shape)
 	{
-		objects.remove(referenceObject);   // just in case it was already there
-		objects.add(referenceObject);      // add at the end
-		shapes.put(referenceObject, new ShapeDescription(shape, color));
-		//         redraw();
+		ShapeDescription description = new ShapeDescription(shape, color);
+		if(scene.contains(handle)) {
+			scene.update(handle, description);
+			return handle;
+		}
+		return scene.add(layer, description);
+	}
+
+	/**
+	 * Draw a shape that does not move (wall, gum...) onto the background layer.
+	 * The background is only drawn once per level, the render thread then copies
+	 * the regions that changed instead of filling every static shape again.
+	 * The shape reaches the background with the next published frame.
+	 * @param  color            the color of the shape
+	 * @param  shape            the shape object to be drawn on the background
+	 */
+	public void drawStatic(String color, Shape shape)
+	{
+		staticShapes.add(new StaticShape(++staticSequence, colorOf(color), shape));
+	}
+
+	/**
+	 * Clear the background layer and all the shapes, before drawing a new level.
+	 */
+	public void clearLayers()
+	{
+		scene.clear();
+		staticShapes.add(new StaticShape(++staticSequence, backgroundColor,
+				new Rectangle(0, 0, backgroundImage.getWidth(), backgroundImage.getHeight())));
 	}
 
 	/**
 	 * Erase a given shape's from the screen.
-	 * @param  referenceObject  the shape object to be erased
+	 * @param  handle  the handle of the shape to be erased (nothing is done for a stale handle)
 	 */
-	public void erase(Object referenceObject)
+	public void erase(int handle)
 	{
-		objects.remove(referenceObject);   // just in case it was already there
-		shapes.remove(referenceObject);
-		//         redraw();
+		if(scene.contains(handle)) {
+			scene.remove(handle);
+		}
 	}
 
 	/**
@@ -215,45 +319,16 @@ public class Canvas
 	 */
 	public void setForegroundColor(String colorString)
 	{
-		if(colorString.equals("red")) {
-			graphic.setColor(new Color(235, 25, 25));
-		}
-		else if(colorString.equals("black")) {
-			graphic.setColor(Color.black);
-		}
-		else if(colorString.equals("blue")) {
-			graphic.setColor(new Color(0, 0, 204));
-		}
-		else if(colorString.equals("violet")) {
-			graphic.setColor(new Color(130, 0, 140));
-		}
-		else if(colorString.equals("yellow")) {
-			graphic.setColor(new Color(255, 230, 0));
-		}
-		else if(colorString.equals("green")) {
-			graphic.setColor(new Color(80, 160, 60));
-		}
-		else if(colorString.equals("pink")) {
-			graphic.setColor(new Color(255, 0, 127));
-		}
-		else if(colorString.equals("white")) {
-			graphic.setColor(Color.white);
-		}
-		else if(colorString.equals("redG")) {
-			graphic.setColor(new Color(239, 7, 7));
-		}
-		else if(colorString.equals("blueG")) {
-			graphic.setColor(new Color(102, 254, 255));
-		}
-		else if(colorString.equals("orangeG")) {
-			graphic.setColor(new Color(250, 156, 0));
-		}
-		else if(colorString.equals("pinkG")) {
-			graphic.setColor(new Color(255, 152, 153));
-		}
-		else {
-			graphic.setColor(Color.black);
-		}
+		graphic.setColor(colorOf(colorString));
+	}
+
+	/**
+	 * Give the color corresponding to a color name (black for unknown names).
+	 */
+	private static Color colorOf(String colorString)
+	{
+		Color color = COLORS.get(colorString);
+		return color != null ? color : Color.black;
 	}
 
 	/**
@@ -275,31 +350,86 @@ public class Canvas
 	}
 
 	/**
-	 * Redraw all shapes currently on the Canvas.
+	 * Publish the shapes currently registered as the next frame to draw.
+	 * Called by the game logic at the end of each tick, it does not wait for the rendering.
 	 */
-	public void redraw(int score, int life, String meilleurScore)
+	public void publishFrame(int score, int life, String meilleurScore)
 	{
-		erase();
-		for(Object shape : objects) {
-			shapes.get(shape).draw(graphic);
+		ShapeDescription[] snapshot = scene.toArray(new ShapeDescription[scene.size()]);
+		latestFrame.set(new Frame(snapshot, staticSequence, score, life, meilleurScore));
+	}
+
+	/**
+	 * Body of the render thread: draws the latest published frame at a fixed rate.
+	 */
+	private void renderLoop()
+	{
+		long nextFrame = System.nanoTime();
+		while(true) {
+			Frame frame = latestFrame.get();
+			if(frame != null && frame != renderedFrame) {
+				render(frame);
+			}
+			nextFrame += RENDER_PERIOD;
+			long delay = nextFrame - System.nanoTime();
+			if(delay > 0) {
+				LockSupport.parkNanos(delay);
+			}
+			else {
+				nextFrame = System.nanoTime();
+			}
 		}
-		printString("Score : "+score, 10, 20);
-		printString("Vie : "+life, 10, 40);
-		printString("Meilleur score : "+meilleurScore, 240, 20);
-		canvas.repaint();
-		wait(125);
 	}
 
 	/**
-	 * Erase the whole canvas. (Does not repaint.)
+	 * Draw a frame over the one currently on screen.
+	 * Only the regions where a shape moved, appeared or disappeared are redrawn:
+	 * the background layer is copied back, then the shapes overlapping the region.
 	 */
-	private void erase()
+	private void render(Frame frame)
 	{
-		Color original = graphic.getColor();
-		graphic.setColor(backgroundColor);
-		Dimension size = canvas.getSize();
-		graphic.fill(new Rectangle(0, 0, size.width, size.height));
-		graphic.setColor(original);
+		List<Rectangle> dirtyRegions = new ArrayList<Rectangle>();
+		dirtyRegions.add(HUD);
+		StaticShape staticShape;
+		while((staticShape = staticShapes.peek()) != null && staticShape.sequence <= frame.staticSequence) {
+			staticShapes.poll();
+			backgroundGraphic.setColor(staticShape.color);
+			backgroundGraphic.fill(staticShape.shape);
+			dirtyRegions.add(staticShape.shape.getBounds());
+		}
+		// a shape that was not drawn again since the last frame keeps the same description
+		Set<ShapeDescription> current = Collections.newSetFromMap(new IdentityHashMap<ShapeDescription, Boolean>());
+		Collections.addAll(current, frame.shapes);
+		if(renderedFrame != null) {
+			Set<ShapeDescription> previous = Collections.newSetFromMap(new IdentityHashMap<ShapeDescription, Boolean>());
+			for(ShapeDescription description : renderedFrame.shapes) {
+				previous.add(description);
+				if(!current.contains(description)) {
+					dirtyRegions.add(description.getBounds());
+				}
+			}
+			current.removeAll(previous);
+		}
+		for(ShapeDescription description : current) {
+			dirtyRegions.add(description.getBounds());
+		}
+		for(Rectangle region : dirtyRegions) {
+			graphic.setClip(region);
+			graphic.drawImage(backgroundImage, 0, 0, null);
+			for(ShapeDescription description : frame.shapes) {
+				if(description.getBounds().intersects(region)) {
+					description.draw(graphic);
+				}
+			}
+		}
+		graphic.setClip(null);
+		drawString("Score : "+frame.score, 10, 20);
+		drawString("Vie : "+frame.life, 10, 40);
+		drawString("Meilleur score : "+frame.meilleurScore, 240, 20);
+		for(Rectangle region : dirtyRegions) {
+			canvas.repaint(region.x, region.y, region.width, region.height);
+		}
+		renderedFrame = frame;
 	}
 
 	/************************************************************************
@@ -322,22 +452,68 @@ public class Canvas
 	 */
 	private class ShapeDescription
 	{
-		private Shape shape;
-		private String colorString;
+		private final Shape shape;
+		private final Color color;
+		private final Rectangle bounds;
 
 		public ShapeDescription(Shape shape, String color)
 		{
 			this.shape = shape;
-			colorString = color;
+			this.color = colorOf(color);
+			this.bounds = shape.getBounds();
+		}
+
+		public Rectangle getBounds()
+		{
+			return bounds;
 		}
 
 		public void draw(Graphics2D graphic)
 		{
-			setForegroundColor(colorString);
+			graphic.setColor(color);
 			graphic.fill(shape);
 		}
 	}
 
+	/************************************************************************
+	 * Inner class Frame - an immutable snapshot of the shapes to draw,
+	 * published by the game logic and drawn by the render thread.
+	 */
+	private static class Frame
+	{
+		private final ShapeDescription[] shapes;
+		private final long staticSequence; // the static shapes queued before this frame
+		private final int score;
+		private final int life;
+		private final String meilleurScore;
+
+		public Frame(ShapeDescription[] shapes, long staticSequence, int score, int life, String meilleurScore)
+		{
+			this.shapes = shapes;
+			this.staticSequence = staticSequence;
+			this.score = score;
+			this.life = life;
+			this.meilleurScore = meilleurScore;
+		}
+	}
+
+	/************************************************************************
+	 * Inner class StaticShape - a shape waiting to be drawn on the background layer.
+	 */
+	private static class StaticShape
+	{
+		private final long sequence;
+		private final Color color;
+		private final Shape shape;
+
+		public StaticShape(long sequence, Color color, Shape shape)
+		{
+			this.sequence = sequence;
+			this.color = color;
+			this.shape = shape;
+		}
+	}
+
 	/************************************************************************
 	 * Inner class KeyboardListener - listens for the UP, DOWN, RIGHT, LEFT keys.
 	 */
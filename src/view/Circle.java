@@ -76,9 +76,8 @@ public class Circle extends Figure
      */
     protected void draw()
     {
-        Canvas canvas = Canvas.getCanvas();
         if(this.isVisible())
-        	canvas.draw(this, getColor(), new Ellipse2D.Double(getX(), getY(), getWidth(), getHeight()));
+        	paint(new Ellipse2D.Double(getX(), getY(), getWidth(), getHeight()));
     }
 
     /**
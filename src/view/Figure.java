@@ -17,6 +17,9 @@ public abstract class Figure
     private int y; // the figure y location in pixels
     private String color = "white"; // the figure color. Valid colors are "white", "black", "red", "yellow", "blue", "green".
     private boolean isVisible;
+    private boolean isStatic; // a static figure never moves and is drawn on the canvas background
+    private int layer = SceneGraph.DECOR; // the layer of the figure in the canvas scene
+    private int handle = -1; // the handle of the figure in the canvas scene, -1 if it is not drawn
     
     /**
      * Create a new figure.
@@ -56,6 +59,30 @@ public abstract class Figure
     	this.isVisible = isVisible;
     }
 
+    public boolean isStatic() {
+    	return isStatic;
+    }
+
+    /**
+     * Mark the figure as static: it is then drawn once on the canvas background
+     * instead of being redrawn every frame.
+     *
+     * @param isStatic true if the figure never moves
+     */
+    public void setStatic(boolean isStatic) {
+    	this.isStatic = isStatic;
+    }
+
+    /**
+     * Change the layer in which the figure is drawn (figures of upper layers are drawn over it).
+     *
+     * @param layer SceneGraph.DECOR, PACMAN, FANTOME, YEUX or PUPILLES
+     */
+    public void setLayer(int layer) {
+    	erase();
+    	this.layer = layer;
+    }
+
     /**
      * Check whether the figure is inside the canvas
      *
@@ -128,10 +155,9 @@ public abstract class Figure
      */
     public void move(int dx, int dy)
     {
-        erase();
         x += dx;
         y += dy;
-        draw();
+        redraw();
         invariant();
     }
 
@@ -146,10 +172,9 @@ public abstract class Figure
     public void setSize(int width, int height)
     {
         assert width >= 0 && height >= 0 : "Wrong dimensions";
-        erase();
         this.width = width;
         this.height = height;
-        draw();
+        redraw();
         invariant();
     }
 
@@ -173,13 +198,43 @@ public abstract class Figure
      */
     protected abstract void draw();
 
+    /**
+     * Paint the given shape of the figure on the canvas, on the background if the figure is static.
+     *
+     * @param shape the shape to paint, with the figure color
+     */
+    protected void paint(java.awt.Shape shape)
+    {
+        if(Canvas.isHeadless())
+            return;
+        Canvas canvas = Canvas.getCanvas();
+        if(isStatic)
+            canvas.drawStatic(getColor(), shape);
+        else
+            handle = canvas.draw(handle, layer, getColor(), shape);
+    }
+
+    /**
+     * Draw the figure again after a change, in place in the canvas scene,
+     * or erase it if it is not visible anymore.
+     */
+    private void redraw()
+    {
+        if(isVisible)
+            draw();
+        else
+            erase();
+    }
+
     /**
      * Erase the figure on screen.
      */
     protected void erase()
     {
-        Canvas canvas = Canvas.getCanvas();
-        canvas.erase(this);
+        if(handle >= 0) {
+            Canvas.getCanvas().erase(handle);
+            handle = -1;
+        }
     }
 
     /**
@@ -28,6 +28,9 @@ public class GhostSkin {
 		figures[6] = new Circle(eyesize,(int)(x+size-1.5*eyesize),y+diametrehead/2-eyesize,"white", isVisible);//eye
 		figures[7] = new Circle(insideeyesize,x+eyesize/2+insideeyesize/2,y+diametrehead/2-eyesize+insideeyesize/2,"black", isVisible);//eye
 		figures[8] = new Circle(insideeyesize,(int)(x+size-1.5*eyesize+insideeyesize/2),y+diametrehead/2-eyesize+insideeyesize/2,"black", isVisible);//eye
+		for (int i = 0; i < figures.length; i++) {
+			figures[i].setLayer(i < 5 ? SceneGraph.FANTOME : (i < 7 ? SceneGraph.YEUX : SceneGraph.PUPILLES));
+		}
 	}
 
 
@@ -3,6 +3,8 @@ package view;
 public class Gomme extends Figure {
 
   private Figure[] figures;
+  /** la gomme de la case en debut de niveau */
+  private Figure gommeInitiale;
   private boolean supra;
   private static final String COLOR_WALK = "black";
   private static final String COLOR_GOM = "white";
@@ -19,6 +21,7 @@ public class Gomme extends Figure {
     super(size, size, x, y, "black");
     this.figures = new Figure[2];
     this.figures[0] = new Square(size, x, y, Gomme.COLOR_WALK);
+    this.figures[0].setStatic(true);
   }
 
   /**
@@ -43,6 +46,8 @@ public class Gomme extends Figure {
     int xg = x+(size/2)-(sg/2);
     int yg = y+(size/2)-(sg/2);
     this.figures[1] = new Circle(sg, xg, yg, Gomme.COLOR_GOM);
+    this.figures[1].setStatic(true);
+    this.gommeInitiale = this.figures[1];
   }
 
   /**
@@ -53,6 +58,13 @@ public class Gomme extends Figure {
     this.figures[1] = c;
   }
 
+  /**
+   * replace la gomme de debut de niveau sur la case
+   */
+  public void reset () {
+    this.figures[1] = this.gommeInitiale;
+  }
+
   /**
    * retourne la gomme presente ou non sur la case
    * @return l'objet Circle si exist sinon NULL
@@ -69,6 +81,8 @@ public class Gomme extends Figure {
    * dessine l'objet case Gomme
    * Square (fond)
    * Circle (gomme si exist)
+   * les deux sont statiques : ils sont dessinés sur le fond du canvas,
+   * redessiner la case apres avoir retiré la gomme l'efface donc du fond
    */
   public void draw () {
     for (Figure f : this.figures) {
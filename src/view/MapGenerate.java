@@ -17,10 +17,25 @@ public class MapGenerate {
     return this.theMap;
   }
 
+  /**
+   * remet les cases dans leur etat de debut de niveau (gommes replacées)
+   */
+  public void reset () {
+    for (Figure[] fl : this.theMap) {
+      for (Figure f : fl) {
+        if (f instanceof Gomme) {
+          ((Gomme)f).reset();
+        }
+      }
+    }
+  }
+
   /**
    * dessine la map
+   * le fond du canvas est vidé avant, les murs et les gommes du niveau precedent disparaissent
    */
   public void draw () {
+    Canvas.getCanvas().clearLayers();
     for (Figure[] fl : this.theMap) {
       for (Figure f : fl) {
         if (f!=null) {
@@ -40,9 +40,8 @@ public class Rect extends Figure
      */
     protected void draw()
     {
-        Canvas canvas = Canvas.getCanvas();
         if(this.isVisible())
-        	canvas.draw(this, getColor(), new Rectangle(getX(), getY(), getWidth(), getHeight()));
+        	paint(new Rectangle(getX(), getY(), getWidth(), getHeight()));
     }
 
 
@@ -0,0 +1,221 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * An indexed scene: the items drawn by the Canvas, sorted in z-ordered layers
+ * (DECOR is drawn first, PUPILLES last).
+ * Each item gets a stable integer handle when it is added. Adding, updating and
+ * removing an item are O(1): each layer is a dense array and a removed item is
+ * replaced by the last item of its layer.
+ * A handle becomes stale when its item is removed or when the scene is cleared:
+ * it is then no longer contained in the scene, even once its slot is reused.
+ *
+ * @inv size() >= 0
+ */
+public class SceneGraph<T>
+{
+    public static final int DECOR = 0;
+    public static final int PACMAN = 1;
+    public static final int FANTOME = 2;
+    public static final int YEUX = 3;
+    public static final int PUPILLES = 4;
+    public static final int NB_LAYERS = 5;
+
+    // a handle is a slot index (low bits) and the generation of the slot (high bits)
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    // per slot
+    private int[] generations;
+    private int[] layers;
+    private int[] positions; // position of the item in its layer, -1 for a free slot
+    private int nbSlots;
+    private int[] freeSlots;
+    private int nbFreeSlots;
+    // per layer
+    private Object[][] items;
+    private int[][] slots;
+    private int[] sizes;
+    private int size;
+
+    /**
+     * Create an empty scene.
+     */
+    public SceneGraph()
+    {
+        generations = new int[64];
+        layers = new int[64];
+        positions = new int[64];
+        freeSlots = new int[64];
+        items = new Object[NB_LAYERS][16];
+        slots = new int[NB_LAYERS][16];
+        sizes = new int[NB_LAYERS];
+    }
+
+    /**
+     * Give the number of items in the scene
+     *
+     * @return the number of items
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Add an item on top of a layer.
+     *
+     * @param layer the layer of the item
+     * @param item the item to add
+     * @return the handle of the item
+     *
+     * @pre layer >= 0 && layer < NB_LAYERS
+     */
+    public int add(int layer, T item)
+    {
+        assert layer >= 0 && layer < NB_LAYERS : "Wrong layer";
+        int slot;
+        if(nbFreeSlots > 0) {
+            slot = freeSlots[--nbFreeSlots];
+        }
+        else {
+            slot = nbSlots++;
+            assert slot <= INDEX_MASK : "Too many items in the scene";
+            if(slot == generations.length) {
+                generations = Arrays.copyOf(generations, 2 * slot);
+                layers = Arrays.copyOf(layers, 2 * slot);
+                positions = Arrays.copyOf(positions, 2 * slot);
+                freeSlots = Arrays.copyOf(freeSlots, 2 * slot);
+            }
+        }
+        int position = sizes[layer]++;
+        if(position == items[layer].length) {
+            items[layer] = Arrays.copyOf(items[layer], 2 * position);
+            slots[layer] = Arrays.copyOf(slots[layer], 2 * position);
+        }
+        items[layer][position] = item;
+        slots[layer][position] = slot;
+        layers[slot] = layer;
+        positions[slot] = position;
+        size++;
+        return slot | (generations[slot] << INDEX_BITS);
+    }
+
+    /**
+     * Check whether a handle designates an item of the scene
+     *
+     * @param handle the handle to check (a negative handle is never contained)
+     * @return true if the item of the handle has not been removed
+     */
+    public boolean contains(int handle)
+    {
+        if(handle < 0) {
+            return false;
+        }
+        int slot = handle & INDEX_MASK;
+        return slot < nbSlots && positions[slot] >= 0 && generations[slot] == handle >>> INDEX_BITS;
+    }
+
+    /**
+     * Give the item of a handle
+     *
+     * @param handle the handle of the item
+     * @return the item
+     *
+     * @pre contains(handle)
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int handle)
+    {
+        assert contains(handle) : "Stale handle";
+        int slot = handle & INDEX_MASK;
+        return (T)items[layers[slot]][positions[slot]];
+    }
+
+    /**
+     * Replace the item of a handle, in place.
+     *
+     * @param handle the handle of the item
+     * @param item the new item
+     *
+     * @pre contains(handle)
+     */
+    public void update(int handle, T item)
+    {
+        assert contains(handle) : "Stale handle";
+        int slot = handle & INDEX_MASK;
+        items[layers[slot]][positions[slot]] = item;
+    }
+
+    /**
+     * Remove the item of a handle, the handle becomes stale.
+     *
+     * @param handle the handle of the item
+     *
+     * @pre contains(handle)
+     */
+    public void remove(int handle)
+    {
+        assert contains(handle) : "Stale handle";
+        int slot = handle & INDEX_MASK;
+        int layer = layers[slot];
+        int position = positions[slot];
+        int last = --sizes[layer];
+        items[layer][position] = items[layer][last];
+        slots[layer][position] = slots[layer][last];
+        positions[slots[layer][position]] = position;
+        items[layer][last] = null;
+        free(slot);
+        size--;
+    }
+
+    /**
+     * Remove all the items, all the handles become stale.
+     */
+    public void clear()
+    {
+        for(int layer = 0; layer < NB_LAYERS; layer++) {
+            for(int position = 0; position < sizes[layer]; position++) {
+                free(slots[layer][position]);
+            }
+            Arrays.fill(items[layer], 0, sizes[layer], null);
+            sizes[layer] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Copy the items in z-order (first layer first) into an array.
+     *
+     * @param array an array of size() items
+     * @return the array
+     *
+     * @pre array.length == size()
+     */
+    public T[] toArray(T[] array)
+    {
+        assert array.length == size : "Wrong array size";
+        int start = 0;
+        for(int layer = 0; layer < NB_LAYERS; layer++) {
+            System.arraycopy(items[layer], 0, array, start, sizes[layer]);
+            start += sizes[layer];
+        }
+        return array;
+    }
+
+    private void free(int slot)
+    {
+        positions[slot] = -1;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        freeSlots[nbFreeSlots++] = slot;
+    }
+
+    /**
+     * Check the class invariant
+     */
+    protected void invariant() {
+        assert size >= 0 : "Invariant violated: negative size";
+    }
+}
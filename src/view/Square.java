@@ -70,8 +70,7 @@ public class Square extends Figure
      */
     protected void draw()
     {
-        Canvas canvas = Canvas.getCanvas();
-        canvas.draw(this, getColor(), new Rectangle(getX(), getY(), getWidth(), getHeight()));
+        paint(new Rectangle(getX(), getY(), getWidth(), getHeight()));
     }
 
     /**
@@ -15,6 +15,7 @@ public class Wall extends Square {
    */
   public Wall (int size, int x, int y, String color) {
     super(size, x, y, color);
+    this.setStatic(true);
   }
 
 }